@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.apache.sling.maven.htl.benchmark.MethodSizes;
+import org.apache.sling.maven.htl.benchmark.RenderBenchmark;
+import org.apache.sling.maven.htl.compiler.GeneratedClassesCompiler;
+import org.apache.sling.maven.htl.compiler.HTLClassNameMapper;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.BinaryOperator;
+import org.apache.sling.scripting.sightly.render.RenderUnit;
+
+/**
+ * Renders the Java classes transpiled from HTL scripts by the {@code validate} goal and reports, for each script, the rendering
+ * throughput, the allocation rate and the size of the generated output. The scripts are rendered outside of Sling, against empty
+ * bindings and a render context which doesn't escape, format or include anything, therefore the results are only meant for comparing
+ * scripts, or versions of the same script, with each other. Optionally, the goal also checks the bytecode size of the compiled
+ * classes' methods against the limits of the JIT compiler and of the JVM.
+ */
+@Mojo(
+        name = "benchmark",
+        defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true
+)
+public class BenchmarkMojo extends AbstractMojo {
+
+    private static final String REPORT_FILE = "report.csv";
+    private static final String METHOD_SIZES_FILE = "method-sizes.csv";
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    protected MavenProject project;
+
+    /**
+     * Defines the folder containing the Java classes transpiled from the HTL scripts by the {@code validate} goal, when configured
+     * with {@code generateJavaClasses}.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.generatedJavaClassesDirectory", defaultValue = "${project.build.directory}/generated-sources/htl")
+    private File generatedJavaClassesDirectory;
+
+    /**
+     * Defines the package prefix of the Java classes transpiled by the {@code validate} goal, which is used for mapping the classes
+     * back to their scripts.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.generatedJavaClassesPrefix")
+    private String generatedJavaClassesPrefix;
+
+    /**
+     * Defines the folder where the transpiled Java classes are compiled and where the benchmark's report ({@code report.csv}) is
+     * written.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.benchmark.directory", defaultValue = "${project.build.directory}/htl-benchmark")
+    private File benchmarkDirectory;
+
+    /**
+     * Defines how many times each script is rendered before measuring it, so that the measurement is done on code optimised by the JIT
+     * compiler.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.benchmark.warmupIterations", defaultValue = "1000")
+    private int warmupIterations;
+
+    /**
+     * Defines how many times each script is rendered while measuring it.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.benchmark.iterations", defaultValue = "10000")
+    private int iterations;
+
+    /**
+     * If set to "true" it will skip the benchmark.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.benchmark.skip", defaultValue = "false")
+    private boolean skip;
+
+    /**
+     * If set to "false" the compiled classes will not be rendered, e.g. when the goal is only used for checking the method sizes.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.benchmark.render", defaultValue = "true")
+    private boolean render;
+
+    /**
+     * If set to "true" the bytecode size of each method of the compiled classes will be measured and written to
+     * {@code method-sizes.csv}. Large templates are transpiled to large render methods, which the JIT compiler may refuse to compile,
+     * leaving them to the interpreter.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.checkMethodSizes", defaultValue = "false")
+    private boolean checkMethodSizes;
+
+    /**
+     * Defines the bytecode size above which a method is reported as a warning, when {@code checkMethodSizes} is enabled. The default
+     * value matches HotSpot's {@code -XX:HugeMethodLimit}, above which methods are not JIT-compiled.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.methodSizeWarningLimit", defaultValue = "8000")
+    private int methodSizeWarningLimit;
+
+    /**
+     * Defines the bytecode size above which a method fails the build, when {@code checkMethodSizes} is enabled. The default value
+     * matches the JVM's limit of 64KB per method, so by default only a lower {@code methodSizeWarningLimit} applies to the compiled
+     * classes: the classes with methods above the JVM's limit are rejected by the Java compiler, which always fails the build, naming
+     * the scripts they were transpiled from.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.methodSizeErrorLimit", defaultValue = "65535")
+    private int methodSizeErrorLimit;
+
+    private Map<String, RenderBenchmark.Result> results = Collections.emptyMap();
+    private Map<String, Map<String, Integer>> methodSizes = Collections.emptyMap();
+    private HTLClassNameMapper classNameMapper;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping benchmark.");
+            return;
+        }
+        File sourceDirectory = resolve(generatedJavaClassesDirectory);
+        if (!sourceDirectory.isDirectory()) {
+            getLog().info("Generated Java classes directory does not exist, skipping. Please configure the validate goal with " +
+                    "generateJavaClasses.");
+            return;
+        }
+        classNameMapper = new HTLClassNameMapper(generatedJavaClassesPrefix);
+        File benchmarkRoot = resolve(benchmarkDirectory);
+        File classesDirectory = new File(benchmarkRoot, "classes");
+        List<String> projectClassPath = getProjectClassPath();
+        List<String> compileClassPath = new ArrayList<>(projectClassPath);
+        // the generated classes reference both the HTL runtime and the expression nodes of the HTL compiler
+        compileClassPath.add(getCodeSourcePath(RenderUnit.class));
+        compileClassPath.add(getCodeSourcePath(BinaryOperator.class));
+        try {
+            FileUtils.deleteDirectory(classesDirectory);
+            GeneratedClassesCompiler compiler = new GeneratedClassesCompiler(compileClassPath);
+            List<String> errors = compiler.compile(sourceDirectory, classesDirectory);
+            for (String error : errors) {
+                getLog().error(error);
+            }
+            reportTooLargeMethods(sourceDirectory, compiler.getSourcesWithTooLargeMethods());
+            if (!errors.isEmpty()) {
+                throw new MojoFailureException("Cannot compile the generated Java classes.");
+            }
+            if (checkMethodSizes) {
+                checkMethodSizes(sourceDirectory, classesDirectory, new File(benchmarkRoot, METHOD_SIZES_FILE));
+            }
+            if (!render) {
+                return;
+            }
+            results = new TreeMap<>();
+            try (URLClassLoader classLoader = newClassLoader(classesDirectory, projectClassPath)) {
+                Collection<File> classFiles = FileUtils.listFiles(classesDirectory, new String[] {"class"}, true);
+                RenderBenchmark benchmark = new RenderBenchmark(warmupIterations, iterations);
+                for (File classFile : classFiles) {
+                    String className = GeneratedClassesCompiler.getClassName(classesDirectory, classFile);
+                    Class<?> renderUnitClass = classLoader.loadClass(className);
+                    if (!RenderUnit.class.isAssignableFrom(renderUnitClass) || renderUnitClass.getEnclosingClass() != null) {
+                        continue;
+                    }
+                    try {
+                        RenderUnit renderUnit = (RenderUnit) renderUnitClass.getDeclaredConstructor().newInstance();
+                        results.put(className, benchmark.run(renderUnit));
+                    } catch (Exception | LinkageError e) {
+                        getLog().warn(String.format("Cannot render %s: %s", className, e));
+                    }
+                }
+            }
+            report(sourceDirectory, new File(benchmarkRoot, REPORT_FILE));
+        } catch (IOException | ClassNotFoundException e) {
+            throw new MojoExecutionException("Cannot benchmark the generated Java classes.", e);
+        }
+    }
+
+    private void reportTooLargeMethods(File sourceDirectory, Collection<File> sources) throws MojoFailureException {
+        if (sources.isEmpty()) {
+            return;
+        }
+        for (File source : sources) {
+            String className = GeneratedClassesCompiler.getClassName(sourceDirectory, source);
+            getLog().error(String.format("Class %s, transpiled from script %s, has methods above the JVM's limit of %d bytes of " +
+                    "bytecode, therefore it cannot be compiled; please split the script's template.", className,
+                    classNameMapper.getScriptName(className), GeneratedClassesCompiler.MAX_METHOD_SIZE));
+        }
+        throw new MojoFailureException(String.format("%d generated Java classes have methods exceeding the JVM's limit of %d bytes of " +
+                "bytecode.", sources.size(), GeneratedClassesCompiler.MAX_METHOD_SIZE));
+    }
+
+    private void checkMethodSizes(File sourceDirectory, File classesDirectory, File reportFile) throws IOException, MojoFailureException {
+        methodSizes = new TreeMap<>();
+        for (File classFile : FileUtils.listFiles(classesDirectory, new String[] {"class"}, true)) {
+            methodSizes.put(GeneratedClassesCompiler.getClassName(classesDirectory, classFile), MethodSizes.read(classFile));
+        }
+        int hugeMethods = 0;
+        int tooLargeMethods = 0;
+        FileUtils.forceMkdirParent(reportFile);
+        try (PrintWriter report = new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8))) {
+            report.println("script,class,method,bytecodeSize");
+            for (Map.Entry<String, Map<String, Integer>> classEntry : methodSizes.entrySet()) {
+                String scriptName = getScriptName(sourceDirectory, classEntry.getKey());
+                for (Map.Entry<String, Integer> methodEntry : classEntry.getValue().entrySet()) {
+                    String method = classEntry.getKey() + "#" + methodEntry.getKey();
+                    int size = methodEntry.getValue();
+                    report.println(String.format("%s,%s,%s,%d", scriptName, classEntry.getKey(), methodEntry.getKey(), size));
+                    if (size > methodSizeErrorLimit) {
+                        tooLargeMethods++;
+                        getLog().error(String.format("Method %s, transpiled from script %s, has %d bytes of bytecode, above the " +
+                                "configured limit of %d bytes.", method, scriptName, size, methodSizeErrorLimit));
+                    } else if (size > methodSizeWarningLimit) {
+                        hugeMethods++;
+                        getLog().warn(String.format("Method %s, transpiled from script %s, has %d bytes of bytecode, above the " +
+                                "configured limit of %d bytes; please consider splitting its template.", method, scriptName, size,
+                                methodSizeWarningLimit));
+                    }
+                }
+            }
+        }
+        getLog().info("Method sizes report written to " + reportFile);
+        if (tooLargeMethods > 0) {
+            throw new MojoFailureException(String.format("%d methods of the generated Java classes exceed the configured limit of %d " +
+                    "bytes of bytecode.", tooLargeMethods, methodSizeErrorLimit));
+        }
+        if (hugeMethods > 0) {
+            getLog().warn(String.format("%d methods of the generated Java classes exceed %d bytes of bytecode and may not be " +
+                    "JIT-compiled.", hugeMethods, methodSizeWarningLimit));
+        }
+    }
+
+    /**
+     * Returns the script from which a compiled class was transpiled. The classes nested in a generated class are mapped to the script of
+     * the generated class, which is the one with a source file, since {@code $} is not escaped in the generated class names.
+     */
+    private String getScriptName(File sourceDirectory, String className) {
+        String topLevelClassName = className;
+        while (!new File(sourceDirectory, topLevelClassName.replace('.', File.separatorChar) + ".java").isFile() &&
+                topLevelClassName.contains("$")) {
+            topLevelClassName = StringUtils.substringBeforeLast(topLevelClassName, "$");
+        }
+        return classNameMapper.getScriptName(topLevelClassName);
+    }
+
+    private void report(File sourceDirectory, File reportFile) throws IOException {
+        getLog().info(String.format("%12s %14s %12s %s (%s)", "renders/s", "allocated/s", "output", "script", "class"));
+        FileUtils.forceMkdirParent(reportFile);
+        try (PrintWriter report = new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8))) {
+            report.println("script,class,throughput,allocatedBytesPerRendering,allocationRate,outputSize");
+            for (Map.Entry<String, RenderBenchmark.Result> entry : results.entrySet()) {
+                RenderBenchmark.Result result = entry.getValue();
+                String scriptName = getScriptName(sourceDirectory, entry.getKey());
+                getLog().info(String.format(Locale.ROOT, "%12.0f %14s %12d %s (%s)", result.getThroughput(),
+                        result.getAllocationRate() < 0 ? "n/a" : FileUtils.byteCountToDisplaySize((long) result.getAllocationRate()),
+                        result.getOutputSize(), scriptName, entry.getKey()));
+                report.println(String.format(Locale.ROOT, "%s,%s,%.0f,%d,%.0f,%d", scriptName, entry.getKey(), result.getThroughput(),
+                        result.getAllocatedBytesPerRendering(), result.getAllocationRate(), result.getOutputSize()));
+            }
+        }
+        getLog().info("Benchmark report written to " + reportFile);
+    }
+
+    private List<String> getProjectClassPath() throws MojoExecutionException {
+        try {
+            List<String> classPath = project.getCompileClasspathElements();
+            return classPath == null ? Collections.<String>emptyList() : classPath;
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Cannot resolve the project's compile class path.", e);
+        }
+    }
+
+    private static String getCodeSourcePath(Class<?> clazz) {
+        return FileUtils.toFile(clazz.getProtectionDomain().getCodeSource().getLocation()).getAbsolutePath();
+    }
+
+    private URLClassLoader newClassLoader(File classesDirectory, List<String> projectClassPath) throws IOException {
+        List<URL> urls = new ArrayList<>();
+        urls.add(classesDirectory.toURI().toURL());
+        for (String element : projectClassPath) {
+            urls.add(new File(element).toURI().toURL());
+        }
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]), RenderUnit.class.getClassLoader());
+    }
+
+    private File resolve(File file) {
+        return file.isAbsolute() ? file : new File(project.getBasedir(), file.getPath());
+    }
+
+    // visible for testing only
+    Map<String, RenderBenchmark.Result> getResults() {
+        return results;
+    }
+
+    Map<String, Map<String, Integer>> getMethodSizes() {
+        return methodSizes;
+    }
+}
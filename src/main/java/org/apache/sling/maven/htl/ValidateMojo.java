@@ -16,18 +16,30 @@
  ******************************************************************************/
 package org.apache.sling.maven.htl;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -40,16 +52,28 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
-import org.apache.sling.maven.htl.compiler.HTLClassInfo;
+import org.apache.sling.maven.htl.compiler.HTLClassNameMapper;
+import org.apache.sling.maven.htl.compiler.HTLCompilationResult;
+import org.apache.sling.maven.htl.compiler.HTLCompilerMessage;
 import org.apache.sling.maven.htl.compiler.HTLJavaImportsAnalyzer;
+import org.apache.sling.maven.htl.compiler.HTLScriptScanner;
+import org.apache.sling.maven.htl.compiler.RenderCost;
+import org.apache.sling.maven.htl.compiler.RenderCostAnalyzer;
 import org.apache.sling.maven.htl.compiler.ScriptCompilationUnit;
+import org.apache.sling.maven.htl.compiler.StaticTextCommandStream;
+import org.apache.sling.maven.htl.fork.CompilerWorkerPool;
+import org.apache.sling.maven.htl.fork.ForkedCompilationResult;
+import org.apache.sling.maven.htl.scm.GitChangedFiles;
 import org.apache.sling.scripting.sightly.compiler.CompilationResult;
 import org.apache.sling.scripting.sightly.compiler.CompilerMessage;
 import org.apache.sling.scripting.sightly.compiler.SightlyCompiler;
 import org.apache.sling.scripting.sightly.java.compiler.ClassInfo;
 import org.apache.sling.scripting.sightly.java.compiler.JavaClassBackendCompiler;
 import org.apache.sling.scripting.sightly.java.compiler.JavaImportsAnalyzer;
+import org.codehaus.plexus.util.MatchPatterns;
 import org.codehaus.plexus.util.Scanner;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.sonatype.plexus.build.incremental.BuildContext;
 
 /**
@@ -63,6 +87,7 @@ import org.sonatype.plexus.build.incremental.BuildContext;
 public class ValidateMojo extends AbstractMojo {
 
     private static final String DEFAULT_INCLUDES = "**/*.html";
+    private static final CompilationResult STATIC_SCRIPT_RESULT = new HTLCompilationResult(new StaticTextCommandStream(""));
 
     @Component
     private BuildContext buildContext;
@@ -79,6 +104,25 @@ public class ValidateMojo extends AbstractMojo {
     @Parameter(property = "htl.sourceDirectory", defaultValue = "${project.build.scriptSourceDirectory}")
     private File sourceDirectory;
 
+    /**
+     * Defines an archive (e.g. a content package) from which the HTL scripts to validate are read directly, without extracting it. When
+     * configured, this parameter takes precedence over {@code sourceDirectory}, while the {@code includes} and {@code excludes} patterns
+     * are applied to the names of the archive entries found under {@code sourceArchiveRoot}.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.sourceArchive")
+    private File sourceArchive;
+
+    /**
+     * Defines the folder from the {@code sourceArchive} which corresponds to the repository root; the script names are computed relative
+     * to this folder. The default value matches the layout of content packages.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.sourceArchiveRoot", defaultValue = "jcr_root")
+    private String sourceArchiveRoot;
+
     /**
      * List of files to include. Specified as fileset patterns which are relative to the input directory whose contents will be scanned
      * (see the sourceDirectory configuration option).
@@ -165,9 +209,160 @@ public class ValidateMojo extends AbstractMojo {
     @Parameter(property = "htl.allowedExpressionOptions")
     private Set<String> allowedExpressionOptions;
 
+    /**
+     * If set to "true" the scripts are first scanned for HTL constructs (expressions, {@code data-sly-*} attributes, {@code sly}
+     * elements and HTL comments). Scripts without any such construct are not passed through the HTL compiler: they are reported as
+     * valid and, when Java classes are generated, they are transpiled to classes which output the scripts' static content.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.detectStaticScripts", defaultValue = "true")
+    private boolean detectStaticScripts;
+
+    /**
+     * If set, only the scripts added or modified since the given revision of the project's local Git repository (e.g. the target
+     * branch of a pull request) will be validated. The changes are computed against the merge base of the revision and {@code HEAD} and
+     * include the uncommitted and untracked files. If the revision cannot be resolved locally all the scripts will be validated. This
+     * parameter is ignored when {@code generateJavaClasses} is enabled, since the Java classes of all the scripts have to be generated.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.changedSince")
+    private String changedSince;
+
+    /**
+     * If set to "true" byte-identical scripts (e.g. components copied under several paths) will be compiled only once per build, while
+     * the compiler messages will still be reported for each of the scripts. When Java classes are generated, only the generation of the
+     * classes is repeated for the identical scripts.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.deduplicateScripts", defaultValue = "true")
+    private boolean deduplicateScripts;
+
+    /**
+     * If set to "true" the HTL scripts will be compiled in a pool of forked JVMs, instead of the JVM running the build. This keeps the
+     * compilation of very large script trees from competing for heap with the rest of the build; the compilation results are reported
+     * the same way as for the scripts compiled inside the build's JVM.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.fork", defaultValue = "false")
+    private boolean fork;
+
+    /**
+     * Defines the maximum number of JVMs forked for compiling the HTL scripts, when {@code fork} is enabled.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.forkCount", defaultValue = "1")
+    private int forkCount;
+
+    /**
+     * Defines the arguments (e.g. heap settings) passed to the JVMs forked for compiling the HTL scripts, when {@code fork} is enabled.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.forkArgLine")
+    private String forkArgLine;
+
+    /**
+     * If set to "true" the forked JVMs will load the HTL compiler classes from the AppCDS archive identified by the
+     * {@code forkAppCdsArchive} parameter, in order to reduce their startup time. If the archive doesn't exist, it will be created when
+     * the first forked JVM exits; failing to create it only produces a warning. AppCDS archives can only be created when the build runs
+     * on Java 13 or newer and when the plugin's class path contains only JAR files.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.forkAppCds", defaultValue = "true")
+    private boolean forkAppCds;
+
+    /**
+     * Defines the AppCDS archive used by the JVMs forked for compiling the HTL scripts. The archive's name is suffixed with a hash of the
+     * Java runtime and of the plugin's class path, so that a new archive is created after upgrading either of them; the archives of the
+     * previous versions are not deleted.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.forkAppCdsArchive", defaultValue = "${project.build.directory}/htl/compiler-worker.jsa")
+    private File forkAppCdsArchive;
+
+    /**
+     * If set to "true" the command stream of each compiled script will be analysed in order to estimate the script's rendering cost:
+     * the nesting of loops, the {@code data-sly-use} objects and the {@code format} / {@code i18n} options evaluated inside loops and
+     * the length of the {@code data-sly-call} chains. The scripts exceeding the {@code maxLoopDepth}, {@code maxUsesInLoops},
+     * {@code maxFormatCallsInLoops} or {@code maxCallDepth} limits are reported like the compilation warnings (or errors, see
+     * {@code renderCostAsErrors}), while the metrics of all the scripts are written to the {@code renderCostReport} file.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.analyzeRenderCost", defaultValue = "false")
+    private boolean analyzeRenderCost;
+
+    /**
+     * Defines the maximum nesting depth of {@code data-sly-list} / {@code data-sly-repeat} loops, including the loops of the templates
+     * called from loops. A negative value disables the check.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.maxLoopDepth", defaultValue = "2")
+    private int maxLoopDepth;
+
+    /**
+     * Defines how many times the same {@code data-sly-use} object (i.e. the same class, script or resource) may be instantiated inside
+     * loops, including the instantiations performed by the templates called from loops. Every instantiation is repeated for each
+     * iteration, so the default value only allows a single one per object. A negative value disables the check.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.maxUsesInLoops", defaultValue = "1")
+    private int maxUsesInLoops;
+
+    /**
+     * Defines the maximum number of {@code format} and {@code i18n} expression options evaluated inside loops. A negative value disables
+     * the check.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.maxFormatCallsInLoops", defaultValue = "10")
+    private int maxFormatCallsInLoops;
+
+    /**
+     * Defines the maximum length of the {@code data-sly-call} chains. Calls to templates defined by other scripts count as one level. A
+     * negative value disables the check.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.maxCallDepth", defaultValue = "5")
+    private int maxCallDepth;
+
+    /**
+     * If set to "true" the scripts exceeding the render cost limits will be reported as errors instead of warnings.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.renderCostAsErrors", defaultValue = "false")
+    private boolean renderCostAsErrors;
+
+    /**
+     * Defines the CSV file where the render cost metrics of the scripts are written, when {@code analyzeRenderCost} is enabled.
+     *
+     * @since 2.0.5-1.4.0
+     */
+    @Parameter(property = "htl.renderCostReport", defaultValue = "${project.build.directory}/htl/render-cost.csv")
+    private File renderCostReport;
+
     private boolean hasWarnings = false;
     private boolean hasErrors = false;
     private List<File> processedFiles = Collections.emptyList();
+    private ZipFile archive;
+    private Map<File, ZipEntry> archiveEntries = Collections.emptyMap();
+    private int staticScripts = 0;
+    private int duplicateScripts = 0;
+    private HTLClassNameMapper classNameMapper;
+    private RenderCost.Limits renderCostLimits;
+    private Map<File, RenderCost> renderCosts = Collections.emptyMap();
+    private int expensiveScripts = 0;
 
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (skip) {
@@ -177,16 +372,35 @@ public class ValidateMojo extends AbstractMojo {
 
         long start = System.currentTimeMillis();
 
-        if (!sourceDirectory.isAbsolute()) {
-            sourceDirectory = new File(project.getBasedir(), sourceDirectory.getPath());
-        }
-        if (!sourceDirectory.exists()) {
-            getLog().info("Source directory does not exist, skipping.");
-            return;
-        }
-        if (!sourceDirectory.isDirectory()) {
-            throw new MojoExecutionException(
-                    String.format("Configured sourceDirectory={%s} is not a directory.", sourceDirectory.getAbsolutePath()));
+        File source;
+        if (sourceArchive != null) {
+            if (!sourceArchive.isAbsolute()) {
+                sourceArchive = new File(project.getBasedir(), sourceArchive.getPath());
+            }
+            if (!sourceArchive.exists()) {
+                getLog().info("Source archive does not exist, skipping.");
+                return;
+            }
+            if (!sourceArchive.isFile()) {
+                throw new MojoExecutionException(
+                        String.format("Configured sourceArchive={%s} is not a file.", sourceArchive.getAbsolutePath()));
+            }
+            // the archive entries are reported as if they were files from a folder inside the archive
+            sourceDirectory = StringUtils.isNotEmpty(sourceArchiveRoot) ? new File(sourceArchive, sourceArchiveRoot) : sourceArchive;
+            source = sourceArchive;
+        } else {
+            if (!sourceDirectory.isAbsolute()) {
+                sourceDirectory = new File(project.getBasedir(), sourceDirectory.getPath());
+            }
+            if (!sourceDirectory.exists()) {
+                getLog().info("Source directory does not exist, skipping.");
+                return;
+            }
+            if (!sourceDirectory.isDirectory()) {
+                throw new MojoExecutionException(
+                        String.format("Configured sourceDirectory={%s} is not a directory.", sourceDirectory.getAbsolutePath()));
+            }
+            source = sourceDirectory;
         }
         if (generateJavaClasses) {
             // validate generated Java classes folder
@@ -202,9 +416,10 @@ public class ValidateMojo extends AbstractMojo {
                         generatedJavaClassesDirectory.getAbsolutePath()));
             }
             project.addCompileSourceRoot(generatedJavaClassesDirectory.getPath());
+            classNameMapper = new HTLClassNameMapper(generatedJavaClassesPrefix);
         }
 
-        if (!buildContext.hasDelta(sourceDirectory)) {
+        if (!buildContext.hasDelta(source)) {
             getLog().info("No files found to validate, skipping.");
             return;
         }
@@ -213,20 +428,46 @@ public class ValidateMojo extends AbstractMojo {
         boolean mayFailExecution = !buildContext.getClass().getName().startsWith("org.eclipse.m2e");
 
         try {
-            Scanner scanner = buildContext.newScanner(sourceDirectory);
-            scanner.setExcludes(excludes);
-            scanner.setIncludes(includes);
-            scanner.scan();
+            if (sourceArchive != null) {
+                if (StringUtils.isNotBlank(changedSince)) {
+                    getLog().warn("The changedSince parameter is not supported for archives, all the scripts will be validated.");
+                }
+                // the central directory is read only once, when opening the archive
+                archive = new ZipFile(sourceArchive);
+                archiveEntries = scanArchive(archive);
+                processedFiles = new ArrayList<>(archiveEntries.keySet());
+            } else {
+                Scanner scanner = buildContext.newScanner(sourceDirectory);
+                scanner.setExcludes(excludes);
+                scanner.setIncludes(includes);
+                scanner.scan();
 
-            String[] includedFiles = scanner.getIncludedFiles();
+                String[] includedFiles = scanner.getIncludedFiles();
 
-            processedFiles = new ArrayList<>(includedFiles.length);
-            for (String includedFile : includedFiles) {
-                processedFiles.add(new File(sourceDirectory, includedFile));
+                processedFiles = new ArrayList<>(includedFiles.length);
+                for (String includedFile : includedFiles) {
+                    processedFiles.add(new File(sourceDirectory, includedFile));
+                }
+                if (StringUtils.isNotBlank(changedSince)) {
+                    if (generateJavaClasses) {
+                        // the generated classes are compiled and packaged, so they have to be generated for all the scripts
+                        getLog().warn("The changedSince parameter is ignored when generating Java classes, all the scripts will be " +
+                                "validated.");
+                    } else {
+                        processedFiles = filterChangedFiles(processedFiles);
+                    }
+                }
+            }
+            if (analyzeRenderCost) {
+                renderCostLimits = new RenderCost.Limits(maxLoopDepth, maxUsesInLoops, maxFormatCallsInLoops, maxCallDepth);
+                renderCosts = new LinkedHashMap<>();
             }
             Map<File, CompilationResult> compilationResults;
             SightlyCompiler compiler = SightlyCompiler.withKnownExpressionOptions(allowedExpressionOptions);
-            if (generateJavaClasses) {
+            if (fork) {
+                compilationResults = compileHTLScriptsInWorkers(processedFiles, generateJavaClasses ? new HTLJavaImportsAnalyzer
+                        (ignoreImports) : null);
+            } else if (generateJavaClasses) {
                 compilationResults = transpileHTLScriptsToJavaClasses(processedFiles, compiler, new HTLJavaImportsAnalyzer
                         (ignoreImports));
             } else {
@@ -256,6 +497,18 @@ public class ValidateMojo extends AbstractMojo {
             }
 
             getLog().info("Processed " + processedFiles.size() + " files in " + (System.currentTimeMillis() - start) + "ms");
+            if (staticScripts > 0) {
+                getLog().info(staticScripts + " of the processed files did not contain any HTL construct.");
+            }
+            if (duplicateScripts > 0) {
+                getLog().info(duplicateScripts + " of the processed files were identical to other processed files.");
+            }
+            if (analyzeRenderCost) {
+                writeRenderCostReport();
+                if (expensiveScripts > 0) {
+                    getLog().info(expensiveScripts + " of the processed files exceeded the configured render cost limits.");
+                }
+            }
 
             if (mayFailExecution && hasWarnings && failOnWarnings) {
                 throw new MojoFailureException("Compilation warnings were configured to fail the build.");
@@ -265,52 +518,383 @@ public class ValidateMojo extends AbstractMojo {
             }
         } catch (IOException e) {
             throw new MojoExecutionException(String.format("Cannot filter files from {%s} with includes {%s} and excludes {%s}.",
-                    sourceDirectory.getAbsolutePath(), Arrays.asList(includes), Arrays.asList(excludes)), e);
+                    source.getAbsolutePath(), Arrays.asList(includes), excludes == null ? null : Arrays.asList(excludes)), e);
+        } finally {
+            IOUtils.closeQuietly(archive);
+            archive = null;
         }
 
     }
 
+    private List<File> filterChangedFiles(List<File> scripts) throws IOException, MojoExecutionException {
+        Set<File> changedFiles;
+        try {
+            changedFiles = new GitChangedFiles(project.getBasedir()).getChangedFiles(changedSince);
+        } catch (IOException e) {
+            throw new MojoExecutionException(String.format("Cannot determine the files changed since {%s} in the Git repository of " +
+                    "{%s}: %s", changedSince, project.getBasedir(), e.getMessage()), e);
+        }
+        if (changedFiles == null) {
+            getLog().warn(String.format("Cannot determine the files changed since {%s}, all the scripts will be validated.",
+                    changedSince));
+            return scripts;
+        }
+        List<File> changedScripts = new ArrayList<>();
+        for (File script : scripts) {
+            if (changedFiles.contains(script.getCanonicalFile())) {
+                changedScripts.add(script);
+            }
+        }
+        getLog().info(String.format("%d of the %d scripts were changed since {%s}.", changedScripts.size(), scripts.size(),
+                changedSince));
+        return changedScripts;
+    }
+
+    private Map<File, ZipEntry> scanArchive(ZipFile zipFile) {
+        String root = StringUtils.strip(sourceArchiveRoot, "/");
+        String prefix = StringUtils.isEmpty(root) ? "" : root + "/";
+        MatchPatterns includePatterns = MatchPatterns.from(normalizePatterns(includes == null ? new String[] {"**"} : includes));
+        MatchPatterns excludePatterns = MatchPatterns.from(normalizePatterns(excludes == null ? new String[0] : excludes));
+        Map<File, ZipEntry> entries = new LinkedHashMap<>();
+        Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+        while (zipEntries.hasMoreElements()) {
+            ZipEntry entry = zipEntries.nextElement();
+            String name = entry.getName();
+            if (entry.isDirectory() || !name.startsWith(prefix)) {
+                continue;
+            }
+            String relativePath = name.substring(prefix.length()).replace('/', File.separatorChar);
+            if (includePatterns.matches(relativePath, true) && !excludePatterns.matches(relativePath, true)) {
+                entries.put(new File(sourceDirectory, relativePath), entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Normalises the patterns the same way the directory scanner does (see {@code AbstractScanner#normalizePattern}), so that the
+     * {@code includes} and {@code excludes} have the same meaning for archives and directories.
+     */
+    private static String[] normalizePatterns(String[] patterns) {
+        String[] normalizedPatterns = new String[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            String pattern = patterns[i].trim();
+            if (!pattern.startsWith(SelectorUtils.REGEX_HANDLER_PREFIX)) {
+                pattern = File.separatorChar == '\\' ? pattern.replace('/', '\\') : pattern.replace('\\', '/');
+                if (pattern.endsWith(File.separator)) {
+                    pattern += "**";
+                }
+            }
+            normalizedPatterns[i] = pattern;
+        }
+        return normalizedPatterns;
+    }
+
+    private InputStream openScriptStream(File script) throws IOException {
+        if (archive != null) {
+            return archive.getInputStream(archiveEntries.get(script));
+        }
+        return new FileInputStream(script);
+    }
+
+    private ScriptCompilationUnit newCompilationUnit(ScriptGroup group) {
+        return new ScriptCompilationUnit(getScriptName(group.scripts.get(0)), new ByteArrayInputStream(group.content));
+    }
+
+    /**
+     * Reads the scripts and splits them into static scripts, which are handled right away, and groups of byte-identical scripts, which
+     * have to be compiled. Every script is read only once: the scan, the grouping and the compilation are performed on the same content.
+     * The compilation result map receives an entry for each script, in the order of the scripts, so that the results are reported in the
+     * same order.
+     */
+    private Collection<ScriptGroup> groupScripts(List<File> scripts, Map<File, CompilationResult> compilationResult,
+                                                 JavaImportsAnalyzer javaImportsAnalyzer) throws IOException {
+        Map<Object, ScriptGroup> groups = new LinkedHashMap<>();
+        for (File script : scripts) {
+            compilationResult.put(script, null);
+            byte[] content;
+            try (InputStream inputStream = openScriptStream(script)) {
+                content = IOUtils.toByteArray(inputStream);
+            }
+            if (isStaticScript(script, content)) {
+                compilationResult.put(script, compileStaticScript(script, content, javaImportsAnalyzer));
+                continue;
+            }
+            // a ByteBuffer's hash code and equality are computed from its content
+            Object key = deduplicateScripts ? ByteBuffer.wrap(content) : script;
+            ScriptGroup group = groups.get(key);
+            if (group == null) {
+                group = new ScriptGroup(content);
+                groups.put(key, group);
+            } else {
+                duplicateScripts++;
+                getLog().debug(String.format("HTL script '%s' is identical to HTL script '%s'", script, group.scripts.get(0)));
+            }
+            group.scripts.add(script);
+        }
+        return groups.values();
+    }
+
+    /**
+     * Checks if a script doesn't contain any HTL construct.
+     */
+    private boolean isStaticScript(File script, byte[] content) throws IOException {
+        if (!detectStaticScripts || HTLScriptScanner.containsHTLConstructs(new ByteArrayInputStream(content))) {
+            return false;
+        }
+        staticScripts++;
+        getLog().debug(String.format("HTL script '%s' does not contain any HTL construct", script));
+        return true;
+    }
+
     private Map<File, CompilationResult> transpileHTLScriptsToJavaClasses(List<File> scripts, SightlyCompiler compiler, JavaImportsAnalyzer
             javaImportsAnalyzer) throws IOException {
         Map<File, CompilationResult> compilationResult = new LinkedHashMap<>(scripts.size());
-        for (File script : scripts) {
+        for (ScriptGroup group : groupScripts(scripts, compilationResult, javaImportsAnalyzer)) {
             JavaClassBackendCompiler backendCompiler = new JavaClassBackendCompiler(javaImportsAnalyzer);
-            ScriptCompilationUnit compilationUnit = new ScriptCompilationUnit(sourceDirectory, script);
-            compilationResult.put(script, compiler.compile(compilationUnit, backendCompiler));
-            
-            // strip off source directory path from script path for class info
-            File scriptFile = new File(script.getPath());
-            File sourceDirectoryDir = new File(sourceDirectory.getAbsolutePath());
-            String shortenedScriptPath = StringUtils.substringAfter(scriptFile.getCanonicalPath(), sourceDirectoryDir.getCanonicalPath());
-            
-            ClassInfo classInfo = StringUtils.isNotEmpty(generatedJavaClassesPrefix)? new HTLClassInfo(generatedJavaClassesPrefix,
-                    shortenedScriptPath) : new HTLClassInfo(shortenedScriptPath);
-            String javaSourceCode = backendCompiler.build(classInfo);
-            File generatedClassFile = new File(generatedJavaClassesDirectory, classInfo.getFullyQualifiedClassName()
-                    .replaceAll("\\.", Matcher.quoteReplacement(File.separator)) + ".java");
-            FileUtils.forceMkdirParent(generatedClassFile);
-            IOUtils.write(javaSourceCode, new FileOutputStream(generatedClassFile), StandardCharsets.UTF_8);
+            RenderCostAnalyzer renderCostAnalyzer = analyzeRenderCost ? new RenderCostAnalyzer() : null;
+            ScriptCompilationUnit compilationUnit = newCompilationUnit(group);
+            CompilationResult result = compiler.compile(compilationUnit, renderCostAnalyzer == null ? backendCompiler :
+                    RenderCostAnalyzer.with(backendCompiler, renderCostAnalyzer));
             compilationUnit.dispose();
-            getLog().debug(String.format("Transpiled HTL '%s' to Java class '%s'", script, generatedClassFile));
+            RenderCost renderCost = renderCostAnalyzer == null ? null : renderCostAnalyzer.getRenderCost();
+            // identical scripts share the front-end output, only the class generation depends on the script's name
+            for (File script : group.scripts) {
+                ClassInfo classInfo = classNameMapper.getClassInfo(getScriptName(script));
+                compilationResult.put(script, checkRenderCost(script, renderCost, writeJavaClass(script, classInfo,
+                        backendCompiler.build(classInfo), result)));
+            }
         }
         return compilationResult;
     }
 
     private Map<File, CompilationResult> compileHTLScripts(List<File> scripts, SightlyCompiler compiler) throws IOException {
         Map<File, CompilationResult> compilationResult = new LinkedHashMap<>(scripts.size());
-        for (File script : scripts) {
-            ScriptCompilationUnit scriptCompilationUnit = new ScriptCompilationUnit(sourceDirectory, script);
-            compilationResult.put(script, compiler.compile(scriptCompilationUnit));
+        for (ScriptGroup group : groupScripts(scripts, compilationResult, null)) {
+            RenderCostAnalyzer renderCostAnalyzer = analyzeRenderCost ? new RenderCostAnalyzer() : null;
+            ScriptCompilationUnit scriptCompilationUnit = newCompilationUnit(group);
+            CompilationResult result = renderCostAnalyzer == null ? compiler.compile(scriptCompilationUnit) :
+                    compiler.compile(scriptCompilationUnit, renderCostAnalyzer);
             scriptCompilationUnit.dispose();
-            getLog().debug(String.format("Compiled HTL script '%s'", script));
+            RenderCost renderCost = renderCostAnalyzer == null ? null : renderCostAnalyzer.getRenderCost();
+            for (File script : group.scripts) {
+                compilationResult.put(script, checkRenderCost(script, renderCost, result));
+                getLog().debug(String.format("Compiled HTL script '%s'", script));
+            }
         }
         return compilationResult;
     }
+
+    /**
+     * Handles a script without HTL constructs; when Java classes are generated, the script is transpiled to a class that outputs the
+     * script's content, otherwise the script is valid as it is.
+     */
+    private CompilationResult compileStaticScript(File script, byte[] content, JavaImportsAnalyzer javaImportsAnalyzer)
+            throws IOException {
+        if (!generateJavaClasses) {
+            return STATIC_SCRIPT_RESULT;
+        }
+        StaticTextCommandStream commandStream = new StaticTextCommandStream(new String(content, StandardCharsets.UTF_8));
+        JavaClassBackendCompiler backendCompiler = new JavaClassBackendCompiler(javaImportsAnalyzer);
+        backendCompiler.handle(commandStream);
+        ClassInfo classInfo = classNameMapper.getClassInfo(getScriptName(script));
+        return writeJavaClass(script, classInfo, backendCompiler.build(classInfo), new HTLCompilationResult(commandStream));
+    }
+
+    private Map<File, CompilationResult> compileHTLScriptsInWorkers(List<File> scripts, JavaImportsAnalyzer javaImportsAnalyzer)
+            throws IOException, MojoExecutionException {
+        Map<File, CompilationResult> compilationResult = new LinkedHashMap<>(scripts.size());
+        List<List<File>> groups = new ArrayList<>();
+        List<List<ClassInfo>> classInfos = new ArrayList<>();
+        List<CompilerWorkerPool.Request> requests = new ArrayList<>();
+        // static scripts are cheap enough to be handled without a round trip to a worker
+        for (ScriptGroup group : groupScripts(scripts, compilationResult, javaImportsAnalyzer)) {
+            List<ClassInfo> groupClassInfos = new ArrayList<>(group.scripts.size());
+            List<String> classNames = null;
+            if (generateJavaClasses) {
+                classNames = new ArrayList<>(group.scripts.size());
+                for (File identicalScript : group.scripts) {
+                    ClassInfo classInfo = classNameMapper.getClassInfo(getScriptName(identicalScript));
+                    groupClassInfos.add(classInfo);
+                    classNames.add(classInfo.getFullyQualifiedClassName());
+                }
+            }
+            requests.add(new CompilerWorkerPool.Request(getScriptName(group.scripts.get(0)), classNames, group.content));
+            groups.add(group.scripts);
+            classInfos.add(groupClassInfos);
+        }
+        List<ForkedCompilationResult> results;
+        try {
+            results = newCompilerWorkerPool().compile(requests);
+        } catch (IOException e) {
+            throw new MojoExecutionException(String.format("Cannot compile the HTL scripts in the forked JVMs (forkCount={%d}, " +
+                    "forkArgLine={%s}): %s", forkCount, forkArgLine, e.getMessage()), e);
+        }
+        for (int i = 0; i < results.size(); i++) {
+            List<File> group = groups.get(i);
+            ForkedCompilationResult result = results.get(i);
+            for (int j = 0; j < group.size(); j++) {
+                File script = group.get(j);
+                if (generateJavaClasses) {
+                    compilationResult.put(script, checkRenderCost(script, result.getRenderCost(), writeJavaClass(script,
+                            classInfos.get(i).get(j), result.getJavaSourceCodes().get(j), result)));
+                } else {
+                    compilationResult.put(script, checkRenderCost(script, result.getRenderCost(), result));
+                    getLog().debug(String.format("Compiled HTL script '%s'", script));
+                }
+            }
+        }
+        return compilationResult;
+    }
+
+    private CompilerWorkerPool newCompilerWorkerPool() throws MojoExecutionException {
+        if (forkCount < 1) {
+            throw new MojoExecutionException(String.format("Configured forkCount={%d} should be at least 1.", forkCount));
+        }
+        List<String> jvmArguments = new ArrayList<>();
+        if (StringUtils.isNotBlank(forkArgLine)) {
+            try {
+                jvmArguments.addAll(Arrays.asList(CommandLineUtils.translateCommandline(forkArgLine)));
+            } catch (Exception e) {
+                throw new MojoExecutionException(String.format("Cannot parse configured forkArgLine={%s}.", forkArgLine), e);
+            }
+        }
+        String classPath = getWorkerClassPath();
+        File appCdsArchive = null;
+        if (forkAppCds) {
+            if (!CompilerWorkerPool.isAppCdsSupported()) {
+                getLog().info("AppCDS archives require Java 13 or newer, the HTL compiler workers will be started without one.");
+            } else if (!CompilerWorkerPool.isAppCdsArchivable(classPath)) {
+                getLog().info("AppCDS archives can only store classes loaded from JAR files, but the class path of the HTL compiler " +
+                        "workers contains folders; the workers will be started without one.");
+            } else {
+                appCdsArchive = forkAppCdsArchive.isAbsolute() ? forkAppCdsArchive : new File(project.getBasedir(),
+                        forkAppCdsArchive.getPath());
+            }
+        }
+        return new CompilerWorkerPool(jvmArguments, classPath, forkCount, appCdsArchive, allowedExpressionOptions, ignoreImports,
+                analyzeRenderCost, getLog());
+    }
+
+    private String getWorkerClassPath() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        if (classLoader instanceof URLClassLoader) {
+            List<String> classPath = new ArrayList<>();
+            for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                File file = FileUtils.toFile(url);
+                if (file != null) {
+                    classPath.add(file.getAbsolutePath());
+                }
+            }
+            if (!classPath.isEmpty()) {
+                return StringUtils.join(classPath, File.pathSeparator);
+            }
+        }
+        return System.getProperty("java.class.path");
+    }
+
+    private String getScriptName(File script) {
+        return script.getAbsolutePath().substring(sourceDirectory.getAbsolutePath().length());
+    }
+
+    /**
+     * Writes the Java class a script was transpiled to, unless another script was already transpiled to the same class, in which case
+     * an error is added to the script's compilation result. If the class' source file differs only in case from the one of another
+     * script, the class is written and a warning is added to the script's compilation result.
+     */
+    private CompilationResult writeJavaClass(File script, ClassInfo classInfo, String javaSourceCode, CompilationResult result)
+            throws IOException {
+        String scriptName = getScriptName(script);
+        String claimingScript = classNameMapper.claim(classInfo, scriptName);
+        if (claimingScript != null) {
+            List<CompilerMessage> errors = new ArrayList<>(result.getErrors());
+            errors.add(new HTLCompilerMessage(scriptName, String.format("Script %s is transpiled to the same Java class %s as script " +
+                    "%s, therefore its Java class was not generated.", scriptName, classInfo.getFullyQualifiedClassName(),
+                    claimingScript), 0, 0));
+            return new HTLCompilationResult(result.getCommandStream(), result.getWarnings(), errors);
+        }
+        File generatedClassFile = classNameMapper.getSourceFile(generatedJavaClassesDirectory, classInfo);
+        FileUtils.forceMkdirParent(generatedClassFile);
+        try (OutputStream outputStream = new FileOutputStream(generatedClassFile)) {
+            IOUtils.write(javaSourceCode, outputStream, StandardCharsets.UTF_8);
+        }
+        getLog().debug(String.format("Transpiled HTL '%s' to Java class '%s'", script, generatedClassFile));
+        String caseClashingScript = classNameMapper.getCaseClashingScript(classInfo, scriptName);
+        if (caseClashingScript != null) {
+            List<CompilerMessage> warnings = new ArrayList<>(result.getWarnings());
+            warnings.add(new HTLCompilerMessage(scriptName, String.format("Script %s is transpiled to Java class %s, whose source file " +
+                    "differs only in case from the one generated for script %s; the source files will overwrite each other on " +
+                    "case-insensitive file systems.", scriptName, classInfo.getFullyQualifiedClassName(), caseClashingScript), 0, 0));
+            return new HTLCompilationResult(result.getCommandStream(), warnings, result.getErrors());
+        }
+        return result;
+    }
+
+    /**
+     * Records a script's render cost and adds the exceeded render cost limits to the script's compilation result.
+     */
+    private CompilationResult checkRenderCost(File script, RenderCost renderCost, CompilationResult result) {
+        if (renderCost == null) {
+            return result;
+        }
+        renderCosts.put(script, renderCost);
+        getLog().debug(String.format("Render cost of HTL script '%s': %s", script, renderCost));
+        List<CompilerMessage> messages = renderCost.check(getScriptName(script), renderCostLimits);
+        if (messages.isEmpty()) {
+            return result;
+        }
+        expensiveScripts++;
+        List<CompilerMessage> warnings = new ArrayList<>(result.getWarnings());
+        List<CompilerMessage> errors = new ArrayList<>(result.getErrors());
+        (renderCostAsErrors ? errors : warnings).addAll(messages);
+        return new HTLCompilationResult(result.getCommandStream(), warnings, errors);
+    }
+
+    private void writeRenderCostReport() throws MojoExecutionException {
+        File reportFile = renderCostReport.isAbsolute() ? renderCostReport : new File(project.getBasedir(), renderCostReport.getPath());
+        try {
+            FileUtils.forceMkdirParent(reportFile);
+            try (PrintWriter report = new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8))) {
+                report.println("script,loopDepth,usesInLoops,repeatedUse,formatCallsInLoops,callDepth");
+                for (Map.Entry<File, RenderCost> entry : renderCosts.entrySet()) {
+                    RenderCost renderCost = entry.getValue();
+                    report.println(String.format("%s,%d,%d,%s,%d,%d", getScriptName(entry.getKey()), renderCost.getLoopDepth(),
+                            renderCost.getUsesInLoops(), StringUtils.defaultString(renderCost.getRepeatedUse()),
+                            renderCost.getFormatCallsInLoops(), renderCost.getCallDepth()));
+                }
+                // PrintWriter doesn't throw on write failures
+                if (report.checkError()) {
+                    throw new IOException("Cannot write to " + reportFile);
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException(String.format("Cannot write the render cost report to {%s}.", reportFile), e);
+        }
+        getLog().info("Render cost report written to " + reportFile);
+    }
+
+    /**
+     * Byte-identical scripts, along with their content.
+     */
+    private static final class ScriptGroup {
+
+        private final List<File> scripts = new ArrayList<>(1);
+        private final byte[] content;
+
+        private ScriptGroup(byte[] content) {
+            this.content = content;
+        }
+    }
+
     // visible for testing only
     void setBuildContext(BuildContext buildContext) {
         this.buildContext = buildContext;
     }
 
+    Map<File, RenderCost> getRenderCosts() {
+        return renderCosts;
+    }
+
     boolean hasWarnings() {
         return hasWarnings;
     }
@@ -322,4 +906,12 @@ public class ValidateMojo extends AbstractMojo {
     List<File> getProcessedFiles() {
         return processedFiles;
     }
+
+    int getStaticScripts() {
+        return staticScripts;
+    }
+
+    int getDuplicateScripts() {
+        return duplicateScripts;
+    }
 }
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+
+import javax.script.Bindings;
+import javax.script.SimpleBindings;
+
+import org.apache.sling.scripting.sightly.render.AbstractRuntimeObjectModel;
+import org.apache.sling.scripting.sightly.render.RenderContext;
+import org.apache.sling.scripting.sightly.render.RuntimeObjectModel;
+
+/**
+ * {@link RenderContext} used for benchmarking the rendering of transpiled HTL scripts outside of Sling. The bindings only contain empty
+ * property maps, Use-API calls return empty objects and the runtime functions return their first argument, without escaping or
+ * formatting it; resource inclusions don't produce any output.
+ */
+public class BenchmarkRenderContext implements RenderContext {
+
+    private static final String[] PROPERTY_BINDINGS = {"properties", "pageProperties", "inheritedPageProperties"};
+
+    private final RuntimeObjectModel objectModel = new AbstractRuntimeObjectModel() {
+    };
+    private final Bindings bindings = new SimpleBindings();
+
+    public BenchmarkRenderContext() {
+        for (String name : PROPERTY_BINDINGS) {
+            bindings.put(name, Collections.emptyMap());
+        }
+    }
+
+    @Override
+    public RuntimeObjectModel getObjectModel() {
+        return objectModel;
+    }
+
+    @Override
+    public Bindings getBindings() {
+        return bindings;
+    }
+
+    @Override
+    public Object call(String functionName, Object... arguments) {
+        switch (functionName) {
+            case "use":
+                return new HashMap<String, Object>();
+            case "include":
+            case "resource":
+                return "";
+            case "xss":
+            case "uriManipulation":
+            case "format":
+            case "i18n":
+            case "join":
+                return arguments.length > 0 ? objectModel.toString(arguments[0]) : "";
+            default:
+                return null;
+        }
+    }
+}
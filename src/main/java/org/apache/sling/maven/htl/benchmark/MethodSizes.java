@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the bytecode size of the methods defined by a class file, i.e. the length of their {@code Code} attributes' code arrays, which
+ * is what the JVM compares against limits like HotSpot's {@code -XX:HugeMethodLimit}.
+ */
+public final class MethodSizes {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final String CODE_ATTRIBUTE = "Code";
+
+    private MethodSizes() {
+    }
+
+    /**
+     * Reads the method sizes from a class file.
+     *
+     * @param classFile the class file
+     * @return the bytecode size of each method with code, keyed by the method's name and descriptor, in declaration order
+     * @throws IOException if the class file cannot be read or is not a valid class file
+     */
+    public static Map<String, Integer> read(File classFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(classFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(String.format("File %s is not a class file.", classFile));
+            }
+            // minor and major versions
+            skipFully(in, 4);
+            String[] utf8Constants = readConstantPool(in, classFile);
+            // access flags, this class, super class
+            skipFully(in, 6);
+            skipFully(in, 2 * in.readUnsignedShort());
+            int fieldsCount = in.readUnsignedShort();
+            for (int i = 0; i < fieldsCount; i++) {
+                skipFully(in, 6);
+                skipAttributes(in);
+            }
+            Map<String, Integer> methodSizes = new LinkedHashMap<>();
+            int methodsCount = in.readUnsignedShort();
+            for (int i = 0; i < methodsCount; i++) {
+                skipFully(in, 2);
+                String name = utf8Constants[in.readUnsignedShort()];
+                String descriptor = utf8Constants[in.readUnsignedShort()];
+                int attributesCount = in.readUnsignedShort();
+                for (int j = 0; j < attributesCount; j++) {
+                    String attributeName = utf8Constants[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if (CODE_ATTRIBUTE.equals(attributeName)) {
+                        // max stack, max locals
+                        skipFully(in, 4);
+                        int codeLength = in.readInt();
+                        methodSizes.put(name + descriptor, codeLength);
+                        skipFully(in, length - 8);
+                    } else {
+                        skipFully(in, length);
+                    }
+                }
+            }
+            return methodSizes;
+        }
+    }
+
+    /**
+     * Reads the constant pool, only keeping the UTF-8 constants, which hold the names needed for identifying the methods and their code.
+     */
+    private static String[] readConstantPool(DataInputStream in, File classFile) throws IOException {
+        int count = in.readUnsignedShort();
+        String[] utf8Constants = new String[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8Constants[i] = in.readUTF();
+                    break;
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    skipFully(in, 2);
+                    break;
+                case 15:
+                    skipFully(in, 3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    skipFully(in, 4);
+                    break;
+                case 5:
+                case 6:
+                    // long and double constants take two entries
+                    skipFully(in, 8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException(String.format("Unknown constant pool tag %d in class file %s.", tag, classFile));
+            }
+        }
+        return utf8Constants;
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributesCount = in.readUnsignedShort();
+        for (int i = 0; i < attributesCount; i++) {
+            skipFully(in, 2);
+            skipFully(in, in.readInt());
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of class file.");
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.benchmark;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.script.SimpleBindings;
+
+import org.apache.sling.scripting.sightly.render.RenderUnit;
+
+/**
+ * Measures the rendering of a {@link RenderUnit} against a {@link BenchmarkRenderContext}.
+ */
+public class RenderBenchmark {
+
+    private final int warmupIterations;
+    private final int iterations;
+
+    /**
+     * @param warmupIterations the number of renderings executed before the measurement
+     * @param iterations       the number of measured renderings
+     */
+    public RenderBenchmark(int warmupIterations, int iterations) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = Math.max(1, iterations);
+    }
+
+    /**
+     * Renders the passed unit repeatedly, on the current thread.
+     *
+     * @param renderUnit the unit to benchmark
+     * @return the benchmark's result
+     */
+    public Result run(RenderUnit renderUnit) {
+        CountingWriter writer = new CountingWriter();
+        PrintWriter out = new PrintWriter(writer);
+        BenchmarkRenderContext renderContext = new BenchmarkRenderContext();
+        renderUnit.render(out, renderContext, new SimpleBindings());
+        out.flush();
+        long outputSize = writer.count;
+        for (int i = 0; i < warmupIterations; i++) {
+            renderUnit.render(out, renderContext, new SimpleBindings());
+        }
+        long allocatedBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            renderUnit.render(out, renderContext, new SimpleBindings());
+        }
+        long duration = Math.max(1, System.nanoTime() - start);
+        if (allocatedBytes >= 0) {
+            allocatedBytes = getAllocatedBytes() - allocatedBytes;
+        }
+        out.flush();
+        return new Result(iterations, duration, allocatedBytes, outputSize);
+    }
+
+    /**
+     * @return the number of bytes allocated so far by the current thread, or {@code -1} if the JVM cannot measure it
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    public static class Result {
+
+        private final int iterations;
+        private final long durationNanos;
+        private final long allocatedBytes;
+        private final long outputSize;
+
+        Result(int iterations, long durationNanos, long allocatedBytes, long outputSize) {
+            this.iterations = iterations;
+            this.durationNanos = durationNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.outputSize = outputSize;
+        }
+
+        /**
+         * @return the number of renderings per second
+         */
+        public double getThroughput() {
+            return iterations * 1e9 / durationNanos;
+        }
+
+        /**
+         * @return the number of bytes allocated per rendering, or {@code -1} if the allocations could not be measured
+         */
+        public long getAllocatedBytesPerRendering() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes / iterations;
+        }
+
+        /**
+         * @return the number of bytes allocated per second, or {@code -1} if the allocations could not be measured
+         */
+        public double getAllocationRate() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes * 1e9 / durationNanos;
+        }
+
+        /**
+         * @return the number of characters written by a rendering
+         */
+        public long getOutputSize() {
+            return outputSize;
+        }
+    }
+
+    /**
+     * Discards the rendered output, only counting its characters.
+     */
+    private static class CountingWriter extends Writer {
+
+        private long count;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Compiles the Java classes generated from HTL scripts with the Java compiler of the JDK running the build. Instances are not
+ * thread-safe.
+ */
+public class GeneratedClassesCompiler {
+
+    /**
+     * The JVM's limit for the bytecode size of a method.
+     */
+    public static final int MAX_METHOD_SIZE = 65535;
+
+    /**
+     * The key of the diagnostics reported by javac for methods exceeding {@link #MAX_METHOD_SIZE}.
+     */
+    private static final String CODE_TOO_LARGE = "compiler.err.limit.code";
+
+    private final List<String> classPath;
+    private final Set<File> sourcesWithTooLargeMethods = new LinkedHashSet<>();
+
+    /**
+     * @param classPath the class path used for compiling the generated classes; it has to contain the classes referenced by the scripts
+     */
+    public GeneratedClassesCompiler(List<String> classPath) {
+        this.classPath = new ArrayList<>(classPath);
+    }
+
+    /**
+     * Compiles the Java sources found in {@code sourceDirectory}.
+     *
+     * @param sourceDirectory the folder containing the generated Java sources
+     * @param outputDirectory the folder where the class files will be written
+     * @return the compilation errors, except the ones caused by methods exceeding {@link #MAX_METHOD_SIZE}, which are available from
+     * {@link #getSourcesWithTooLargeMethods()}; the sources were compiled only if both are empty
+     * @throws IOException if the sources cannot be read or the class files cannot be written
+     */
+    public List<String> compile(File sourceDirectory, File outputDirectory) throws IOException {
+        JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
+        if (javaCompiler == null) {
+            throw new IOException("The build doesn't run on a JDK, therefore no Java compiler is available.");
+        }
+        sourcesWithTooLargeMethods.clear();
+        FileUtils.forceMkdir(outputDirectory);
+        Collection<File> sources = FileUtils.listFiles(sourceDirectory, new String[] {"java"}, true);
+        List<String> errors = new ArrayList<>();
+        if (sources.isEmpty()) {
+            return errors;
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = javaCompiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("-d", outputDirectory.getAbsolutePath(), "-classpath", StringUtils.join(classPath,
+                    File.pathSeparator), "-encoding", StandardCharsets.UTF_8.name(), "-proc:none", "-nowarn", "-g");
+            Boolean success = javaCompiler.getTask(null, fileManager, diagnostics, options, null, fileManager.getJavaFileObjectsFromFiles
+                    (sources)).call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getSource() != null && diagnostic.getCode() != null &&
+                        diagnostic.getCode().startsWith(CODE_TOO_LARGE)) {
+                    sourcesWithTooLargeMethods.add(new File(diagnostic.getSource().toUri()));
+                } else if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors.add(String.format("%s:%d: %s", diagnostic.getSource() == null ? "" : diagnostic.getSource().getName(),
+                            diagnostic.getLineNumber(), diagnostic.getMessage(Locale.ROOT)));
+                }
+            }
+            if (!Boolean.TRUE.equals(success) && errors.isEmpty() && sourcesWithTooLargeMethods.isEmpty()) {
+                errors.add("The generated Java classes could not be compiled.");
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Returns the sources which the last {@link #compile(File, File)} call could not compile because some of their methods exceed
+     * {@link #MAX_METHOD_SIZE}.
+     *
+     * @return the sources with too large methods
+     */
+    public Collection<File> getSourcesWithTooLargeMethods() {
+        return Collections.unmodifiableSet(sourcesWithTooLargeMethods);
+    }
+
+    /**
+     * Returns the fully qualified name of the class compiled from a class file or from a Java source file.
+     *
+     * @param rootDirectory the folder containing the class files or the Java sources
+     * @param file          the class file or the Java source file
+     * @return the fully qualified class name
+     */
+    public static String getClassName(File rootDirectory, File file) {
+        String path = rootDirectory.toURI().relativize(file.toURI()).getPath();
+        return StringUtils.removeEnd(StringUtils.removeEnd(path, ".class"), ".java").replace('/', '.');
+    }
+}
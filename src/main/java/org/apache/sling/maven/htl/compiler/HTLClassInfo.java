@@ -35,6 +35,24 @@ public class HTLClassInfo implements ClassInfo {
         fqcn = prefix + "." + JavaEscapeHelper.makeJavaPackage(script);
     }
 
+    private HTLClassInfo(String packageName, String simpleClassName, String fqcn) {
+        this.packageName = packageName;
+        this.simpleClassName = simpleClassName;
+        this.fqcn = fqcn;
+    }
+
+    /**
+     * Creates a class info from an already escaped package name and simple class name.
+     *
+     * @param packageName     the package name
+     * @param simpleClassName the simple class name
+     * @return the class info
+     */
+    public static HTLClassInfo of(String packageName, String simpleClassName) {
+        return new HTLClassInfo(packageName, simpleClassName, packageName.isEmpty() ? simpleClassName : packageName + "." +
+                simpleClassName);
+    }
+
     @Override
     public String getSimpleClassName() {
         if (simpleClassName == null) {
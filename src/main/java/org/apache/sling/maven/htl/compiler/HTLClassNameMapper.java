@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.compiler;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.sling.commons.compiler.source.JavaEscapeHelper;
+import org.apache.sling.scripting.sightly.java.compiler.ClassInfo;
+
+/**
+ * Maps script names to the Java classes they are transpiled to. Since the scripts of a project share most of their folders, the escaped
+ * form of every path segment and the package name of every folder are computed only once. The mapper also keeps track of the classes
+ * already claimed by scripts, in order to detect the scripts whose names are mangled to the same class, as well as the classes whose
+ * source files differ only in case, which would overwrite each other on case-insensitive file systems.
+ * <p>
+ * The mapping is equivalent to the one performed by {@link HTLClassInfo}'s constructors. Instances are not thread-safe.
+ */
+public class HTLClassNameMapper {
+
+    private final Map<String, String> escapedSegments = new HashMap<>();
+    private final Map<String, String> packageNames = new HashMap<>();
+    private final Map<String, String> claimedClasses = new HashMap<>();
+    private final Map<String, String> claimedSourceFiles = new HashMap<>();
+
+    /**
+     * @param prefix the package prefix of the generated classes; can be {@code null} or empty
+     */
+    public HTLClassNameMapper(String prefix) {
+        packageNames.put("", prefix == null ? "" : prefix);
+    }
+
+    /**
+     * Maps a script to its class.
+     *
+     * @param scriptName the script's path, relative to the source directory
+     * @return the class info
+     */
+    public HTLClassInfo getClassInfo(String scriptName) {
+        String path = scriptName.replace(File.separatorChar, '/');
+        int slash = path.lastIndexOf('/');
+        String packageName = getPackageName(slash < 0 ? "" : path.substring(0, slash));
+        return HTLClassInfo.of(packageName, escape(path.substring(slash + 1)));
+    }
+
+    /**
+     * Maps a class back to the script it was transpiled from, by undoing the escaping of its name. Since different script names can be
+     * escaped to the same class name, the returned name is the most likely one, not necessarily the actual one.
+     *
+     * @param className the fully qualified class name
+     * @return the script's path, relative to the source directory and starting with {@code /}
+     */
+    public String getScriptName(String className) {
+        String prefix = packageNames.get("");
+        String name = className;
+        if (!prefix.isEmpty() && name.startsWith(prefix + ".")) {
+            name = name.substring(prefix.length() + 1);
+        }
+        StringBuilder scriptName = new StringBuilder();
+        for (String segment : name.split("\\.")) {
+            scriptName.append('/').append(JavaEscapeHelper.unescapeAll(segment));
+        }
+        return scriptName.toString();
+    }
+
+    /**
+     * Marks a class as generated from the passed script.
+     *
+     * @param classInfo  the class info
+     * @param scriptName the script's name
+     * @return the name of the script which had already claimed the same class, or {@code null} if the class was not claimed before
+     */
+    public String claim(ClassInfo classInfo, String scriptName) {
+        String claimingScript = claimedClasses.get(classInfo.getFullyQualifiedClassName());
+        if (claimingScript == null) {
+            claimedClasses.put(classInfo.getFullyQualifiedClassName(), scriptName);
+            String sourceFile = getSourceFile(null, classInfo).getPath().toLowerCase(Locale.ROOT);
+            if (!claimedSourceFiles.containsKey(sourceFile)) {
+                claimedSourceFiles.put(sourceFile, scriptName);
+            }
+        }
+        return claimingScript;
+    }
+
+    /**
+     * Checks if the source file of a claimed class differs only in case from the source file of a class claimed before.
+     *
+     * @param classInfo  the class info
+     * @param scriptName the name of the script which claimed the class
+     * @return the name of the script which had already claimed a class with the same source file, ignoring case, or {@code null} if
+     * there is no such script
+     */
+    public String getCaseClashingScript(ClassInfo classInfo, String scriptName) {
+        String claimingScript = claimedSourceFiles.get(getSourceFile(null, classInfo).getPath().toLowerCase(Locale.ROOT));
+        return scriptName.equals(claimingScript) ? null : claimingScript;
+    }
+
+    /**
+     * Returns the source file of a class.
+     *
+     * @param sourceRoot the source folder; if {@code null} the returned file is relative
+     * @param classInfo  the class info
+     * @return the source file
+     */
+    public File getSourceFile(File sourceRoot, ClassInfo classInfo) {
+        String packageName = classInfo.getPackageName();
+        String fileName = classInfo.getSimpleClassName() + ".java";
+        return packageName.isEmpty() ? new File(sourceRoot, fileName) : new File(new File(sourceRoot, packageName.replace('.',
+                File.separatorChar)), fileName);
+    }
+
+    private String getPackageName(String folder) {
+        String packageName = packageNames.get(folder);
+        if (packageName == null) {
+            int slash = folder.lastIndexOf('/');
+            String parentPackageName = getPackageName(slash < 0 ? "" : folder.substring(0, slash));
+            String segment = folder.substring(slash + 1);
+            if (segment.isEmpty()) {
+                packageName = parentPackageName;
+            } else if (parentPackageName.isEmpty()) {
+                packageName = escape(segment);
+            } else {
+                packageName = parentPackageName + "." + escape(segment);
+            }
+            packageNames.put(folder, packageName);
+        }
+        return packageName;
+    }
+
+    private String escape(String segment) {
+        String escapedSegment = escapedSegments.get(segment);
+        if (escapedSegment == null) {
+            // a single segment is escaped to a single Java identifier
+            escapedSegment = JavaEscapeHelper.makeJavaPackage(segment);
+            escapedSegments.put(segment, escapedSegment);
+        }
+        return escapedSegment;
+    }
+}
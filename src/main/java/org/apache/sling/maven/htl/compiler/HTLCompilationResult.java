@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sling.scripting.sightly.compiler.CompilationResult;
+import org.apache.sling.scripting.sightly.compiler.CompilerMessage;
+import org.apache.sling.scripting.sightly.compiler.commands.CommandStream;
+
+public class HTLCompilationResult implements CompilationResult {
+
+    private final CommandStream commandStream;
+    private final List<CompilerMessage> warnings;
+    private final List<CompilerMessage> errors;
+
+    public HTLCompilationResult(CommandStream commandStream) {
+        this(commandStream, Collections.<CompilerMessage>emptyList(), Collections.<CompilerMessage>emptyList());
+    }
+
+    public HTLCompilationResult(CommandStream commandStream, List<CompilerMessage> warnings, List<CompilerMessage> errors) {
+        this.commandStream = commandStream;
+        this.warnings = new ArrayList<>(warnings);
+        this.errors = new ArrayList<>(errors);
+    }
+
+    @Override
+    public CommandStream getCommandStream() {
+        return commandStream;
+    }
+
+    @Override
+    public List<CompilerMessage> getWarnings() {
+        return Collections.unmodifiableList(warnings);
+    }
+
+    @Override
+    public List<CompilerMessage> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.compiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lexical pre-filter which detects scripts that don't contain any HTL construct. The scanner works directly on the script's bytes,
+ * without decoding them, and looks for the markers that would make the HTL compiler produce something else than the script's static
+ * content: expressions (<code>${</code>), block statements ({@code data-sly-*}), {@code <sly>} elements and HTL comments ({@code <!--/*}).
+ */
+public final class HTLScriptScanner {
+
+    private static final byte[] EXPRESSION = "${".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BLOCK_STATEMENT = "data-sly".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SLY_ELEMENT = "<sly".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HTL_COMMENT = "<!--/*".getBytes(StandardCharsets.US_ASCII);
+    private static final int CARRY = BLOCK_STATEMENT.length - 1;
+    private static final int _16K = 16384;
+
+    private HTLScriptScanner() {
+    }
+
+    /**
+     * Scans the passed stream until the first HTL construct is found or until the stream is exhausted. The stream is not closed.
+     *
+     * @param inputStream the script's content
+     * @return {@code true} if the script contains at least one HTL construct, {@code false} otherwise
+     * @throws IOException if the stream cannot be read
+     */
+    public static boolean containsHTLConstructs(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[_16K];
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            // the last bytes could be the beginning of a marker split between two reads
+            int end = length - CARRY;
+            for (int i = 0; i < end; i++) {
+                if (isMarker(buffer, i, length)) {
+                    return true;
+                }
+            }
+            if (end > 0) {
+                System.arraycopy(buffer, end, buffer, 0, CARRY);
+                length = CARRY;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            if (isMarker(buffer, i, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMarker(byte[] buffer, int offset, int length) {
+        byte b = buffer[offset];
+        if (b == '$') {
+            return matches(buffer, offset, length, EXPRESSION, false);
+        }
+        if (b == '<') {
+            return matches(buffer, offset, length, HTL_COMMENT, false) || matches(buffer, offset, length, SLY_ELEMENT, true);
+        }
+        if ((b | 0x20) == 'd') {
+            return matches(buffer, offset, length, BLOCK_STATEMENT, true);
+        }
+        return false;
+    }
+
+    private static boolean matches(byte[] buffer, int offset, int length, byte[] marker, boolean ignoreCase) {
+        if (offset + marker.length > length) {
+            return false;
+        }
+        for (int i = 0; i < marker.length; i++) {
+            int b = ignoreCase ? buffer[offset + i] | 0x20 : buffer[offset + i];
+            if (b != marker[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
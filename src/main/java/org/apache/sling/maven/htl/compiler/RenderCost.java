@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.sling.scripting.sightly.compiler.CompilerMessage;
+
+/**
+ * Static estimation of a script's rendering cost, computed by the {@link RenderCostAnalyzer}.
+ */
+public class RenderCost {
+
+    private final int loopDepth;
+    private final int usesInLoops;
+    private final String repeatedUse;
+    private final int formatCallsInLoops;
+    private final int callDepth;
+
+    public RenderCost(int loopDepth, int usesInLoops, String repeatedUse, int formatCallsInLoops, int callDepth) {
+        this.loopDepth = loopDepth;
+        this.usesInLoops = usesInLoops;
+        this.repeatedUse = repeatedUse;
+        this.formatCallsInLoops = formatCallsInLoops;
+        this.callDepth = callDepth;
+    }
+
+    /**
+     * @return the deepest nesting of {@code data-sly-list} / {@code data-sly-repeat} loops, including the loops of the called templates
+     */
+    public int getLoopDepth() {
+        return loopDepth;
+    }
+
+    /**
+     * @return the highest number of {@code data-sly-use} instantiations of the same object inside loops, i.e. of the same class, script
+     * or resource, each of them being performed once per iteration; the objects identified through expressions are not counted
+     */
+    public int getUsesInLoops() {
+        return usesInLoops;
+    }
+
+    /**
+     * @return the identifier of the {@code data-sly-use} object counted by {@link #getUsesInLoops()}, or {@code null} if no object is
+     * instantiated inside loops
+     */
+    public String getRepeatedUse() {
+        return repeatedUse;
+    }
+
+    /**
+     * @return the number of {@code format} and {@code i18n} expression options evaluated inside loops
+     */
+    public int getFormatCallsInLoops() {
+        return formatCallsInLoops;
+    }
+
+    /**
+     * @return the longest chain of {@code data-sly-call} invocations; calls to templates from other scripts count as one level
+     */
+    public int getCallDepth() {
+        return callDepth;
+    }
+
+    /**
+     * Checks the cost against the passed limits.
+     *
+     * @param scriptName the name of the script whose cost this is
+     * @param limits     the limits
+     * @return a message for each exceeded limit
+     */
+    public List<CompilerMessage> check(String scriptName, Limits limits) {
+        List<CompilerMessage> messages = new ArrayList<>();
+        check(messages, scriptName, loopDepth, limits.maxLoopDepth, String.format("Loops are nested %d levels deep", loopDepth));
+        check(messages, scriptName, usesInLoops, limits.maxUsesInLoops, String.format("The data-sly-use object %s is instantiated %d " +
+                "times inside loops", repeatedUse, usesInLoops));
+        check(messages, scriptName, formatCallsInLoops, limits.maxFormatCallsInLoops,
+                String.format("%d format / i18n options are evaluated inside loops", formatCallsInLoops));
+        check(messages, scriptName, callDepth, limits.maxCallDepth, String.format("data-sly-call chains are %d templates deep",
+                callDepth));
+        return messages;
+    }
+
+    private static void check(List<CompilerMessage> messages, String scriptName, int value, int limit, String description) {
+        if (limit >= 0 && value > limit) {
+            messages.add(new HTLCompilerMessage(scriptName, description + String.format(
+                    ", which exceeds the configured render cost limit of %d.", limit), 0, 0));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("loopDepth=%d, usesInLoops=%d, repeatedUse=%s, formatCallsInLoops=%d, callDepth=%d", loopDepth,
+                usesInLoops, repeatedUse, formatCallsInLoops, callDepth);
+    }
+
+    /**
+     * Limits of the {@link RenderCost} metrics; a negative limit disables the check of the corresponding metric.
+     */
+    public static class Limits {
+
+        private final int maxLoopDepth;
+        private final int maxUsesInLoops;
+        private final int maxFormatCallsInLoops;
+        private final int maxCallDepth;
+
+        public Limits(int maxLoopDepth, int maxUsesInLoops, int maxFormatCallsInLoops, int maxCallDepth) {
+            this.maxLoopDepth = maxLoopDepth;
+            this.maxUsesInLoops = maxUsesInLoops;
+            this.maxFormatCallsInLoops = maxFormatCallsInLoops;
+            this.maxCallDepth = maxCallDepth;
+        }
+    }
+}
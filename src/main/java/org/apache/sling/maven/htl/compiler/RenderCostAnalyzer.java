@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.scripting.sightly.compiler.RuntimeFunction;
+import org.apache.sling.scripting.sightly.compiler.backend.BackendCompiler;
+import org.apache.sling.scripting.sightly.compiler.commands.Command;
+import org.apache.sling.scripting.sightly.compiler.commands.CommandHandler;
+import org.apache.sling.scripting.sightly.compiler.commands.CommandStream;
+import org.apache.sling.scripting.sightly.compiler.commands.Loop;
+import org.apache.sling.scripting.sightly.compiler.commands.Procedure;
+import org.apache.sling.scripting.sightly.compiler.commands.VariableBinding;
+import org.apache.sling.scripting.sightly.compiler.expression.ExpressionNode;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.ArrayLiteral;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.BinaryOperation;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.Identifier;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.MapLiteral;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.PropertyAccess;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.RuntimeCall;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.StringConstant;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.TernaryOperator;
+import org.apache.sling.scripting.sightly.compiler.expression.nodes.UnaryOperation;
+
+/**
+ * {@link BackendCompiler} which doesn't generate anything, but estimates the rendering cost of a script from its command stream. The
+ * templates defined by the script are analysed separately and their cost is added to the cost of their {@code data-sly-call} sites;
+ * templates from other scripts cannot be resolved at this point, so calling them only counts as one level of the call chain. The
+ * {@code data-sly-use} objects are counted per identifier (class, script or resource), in order to spot the objects instantiated
+ * repeatedly inside loops; the objects identified through expressions cannot be told apart, therefore they are not counted.
+ */
+public class RenderCostAnalyzer implements BackendCompiler, CommandHandler {
+
+    private static final int MAX_ALIASES = 16;
+
+    private final Scope script = new Scope();
+    private final Map<String, Scope> templates = new HashMap<>();
+    private final Map<String, String> identifiers = new HashMap<>();
+    private Scope current = script;
+
+    /**
+     * Returns a backend compiler which passes the command stream to both the {@code backendCompiler} and the {@code renderCostAnalyzer}.
+     *
+     * @param backendCompiler    the backend compiler generating the script's code
+     * @param renderCostAnalyzer the analyzer
+     * @return the combined backend compiler
+     */
+    public static BackendCompiler with(BackendCompiler backendCompiler, RenderCostAnalyzer renderCostAnalyzer) {
+        return stream -> {
+            renderCostAnalyzer.handle(stream);
+            backendCompiler.handle(stream);
+        };
+    }
+
+    @Override
+    public void handle(CommandStream stream) {
+        stream.addHandler(this);
+    }
+
+    @Override
+    public void onEmit(Command command) {
+        if (command instanceof Loop.Start) {
+            current.loopDepth++;
+            current.cost.loopDepth = Math.max(current.cost.loopDepth, current.loopDepth);
+        } else if (command instanceof Loop.End) {
+            current.loopDepth--;
+        } else if (command instanceof VariableBinding.Start) {
+            VariableBinding.Start variableBinding = (VariableBinding.Start) command;
+            bind(variableBinding.getVariableName(), variableBinding.getExpression());
+        } else if (command instanceof VariableBinding.Global) {
+            VariableBinding.Global variableBinding = (VariableBinding.Global) command;
+            bind(variableBinding.getVariableName(), variableBinding.getExpression());
+        } else if (command instanceof Procedure.Start) {
+            current = new Scope();
+            templates.put(((Procedure.Start) command).getName(), current);
+        } else if (command instanceof Procedure.End) {
+            current = script;
+        } else if (command instanceof Procedure.Call) {
+            current.calls.add(new Call(((Procedure.Call) command).getTemplateVariable(), current.loopDepth));
+        }
+    }
+
+    @Override
+    public void onError(String errorMessage) {
+    }
+
+    @Override
+    public void onDone() {
+    }
+
+    /**
+     * @return the cost of the analysed script, i.e. the highest cost of the script's body and of its templates
+     */
+    public RenderCost getRenderCost() {
+        List<Cost> costs = new ArrayList<>();
+        costs.add(getCost(script, new HashSet<Scope>()));
+        // templates which are only called by other scripts
+        for (Scope template : templates.values()) {
+            costs.add(getCost(template, new HashSet<Scope>()));
+        }
+        int loopDepth = 0;
+        int usesInLoops = 0;
+        String repeatedUse = null;
+        int formatCallsInLoops = 0;
+        int callDepth = 0;
+        for (Cost cost : costs) {
+            loopDepth = Math.max(loopDepth, cost.loopDepth);
+            for (Map.Entry<String, Integer> use : cost.usesInLoops.entrySet()) {
+                if (use.getValue() > usesInLoops || use.getValue() == usesInLoops && use.getKey().compareTo(repeatedUse) < 0) {
+                    usesInLoops = use.getValue();
+                    repeatedUse = use.getKey();
+                }
+            }
+            formatCallsInLoops = Math.max(formatCallsInLoops, cost.formatCallsInLoops);
+            callDepth = Math.max(callDepth, cost.callDepth);
+        }
+        return new RenderCost(loopDepth, usesInLoops, repeatedUse, formatCallsInLoops, callDepth);
+    }
+
+    private void bind(String variableName, ExpressionNode expression) {
+        if (expression instanceof Identifier) {
+            identifiers.put(variableName, ((Identifier) expression).getName());
+        }
+        count(expression);
+    }
+
+    private void count(ExpressionNode node) {
+        if (node instanceof RuntimeCall) {
+            RuntimeCall runtimeCall = (RuntimeCall) node;
+            String functionName = runtimeCall.getFunctionName();
+            List<ExpressionNode> arguments = runtimeCall.getArguments();
+            if (RuntimeFunction.USE.equals(functionName) && !arguments.isEmpty() && arguments.get(0) instanceof StringConstant) {
+                String identifier = ((StringConstant) arguments.get(0)).getText();
+                add(current.cost.uses, identifier, 1);
+                if (current.loopDepth > 0) {
+                    add(current.cost.usesInLoops, identifier, 1);
+                }
+            } else if (RuntimeFunction.FORMAT.equals(functionName) || RuntimeFunction.I18N.equals(functionName)) {
+                current.cost.formatCalls++;
+                if (current.loopDepth > 0) {
+                    current.cost.formatCallsInLoops++;
+                }
+            }
+            for (ExpressionNode argument : arguments) {
+                count(argument);
+            }
+        } else if (node instanceof TernaryOperator) {
+            TernaryOperator ternaryOperator = (TernaryOperator) node;
+            count(ternaryOperator.getCondition());
+            count(ternaryOperator.getThenBranch());
+            count(ternaryOperator.getElseBranch());
+        } else if (node instanceof BinaryOperation) {
+            count(((BinaryOperation) node).getLeftOperand());
+            count(((BinaryOperation) node).getRightOperand());
+        } else if (node instanceof UnaryOperation) {
+            count(((UnaryOperation) node).getTarget());
+        } else if (node instanceof PropertyAccess) {
+            count(((PropertyAccess) node).getTarget());
+            count(((PropertyAccess) node).getProperty());
+        } else if (node instanceof MapLiteral) {
+            for (ExpressionNode value : ((MapLiteral) node).getMap().values()) {
+                count(value);
+            }
+        } else if (node instanceof ArrayLiteral) {
+            for (ExpressionNode item : ((ArrayLiteral) node).getItems()) {
+                count(item);
+            }
+        }
+    }
+
+    /**
+     * Resolves the variable passed to a {@code data-sly-call} to one of the templates defined by the analysed script.
+     */
+    private Scope resolveTemplate(String variableName) {
+        String name = variableName;
+        for (int i = 0; i < MAX_ALIASES && name != null; i++) {
+            Scope template = templates.get(name);
+            if (template != null) {
+                return template;
+            }
+            name = identifiers.get(name);
+        }
+        return null;
+    }
+
+    /**
+     * Computes the cost of a scope, including the cost of the templates it calls; recursive calls are only counted once.
+     */
+    private Cost getCost(Scope scope, Set<Scope> callers) {
+        if (scope.totalCost != null) {
+            return scope.totalCost;
+        }
+        Cost cost = scope.cost.copy();
+        callers.add(scope);
+        for (Call call : scope.calls) {
+            cost.callDepth = Math.max(cost.callDepth, 1);
+            Scope template = resolveTemplate(call.templateVariable);
+            if (template == null || callers.contains(template)) {
+                continue;
+            }
+            Cost templateCost = getCost(template, callers);
+            cost.loopDepth = Math.max(cost.loopDepth, call.loopDepth + templateCost.loopDepth);
+            addAll(cost.uses, templateCost.uses);
+            addAll(cost.usesInLoops, call.loopDepth > 0 ? templateCost.uses : templateCost.usesInLoops);
+            cost.formatCalls += templateCost.formatCalls;
+            cost.formatCallsInLoops += call.loopDepth > 0 ? templateCost.formatCalls : templateCost.formatCallsInLoops;
+            cost.callDepth = Math.max(cost.callDepth, 1 + templateCost.callDepth);
+        }
+        callers.remove(scope);
+        scope.totalCost = cost;
+        return cost;
+    }
+
+    private static void add(Map<String, Integer> counts, String key, int count) {
+        Integer current = counts.get(key);
+        counts.put(key, current == null ? count : current + count);
+    }
+
+    private static void addAll(Map<String, Integer> counts, Map<String, Integer> addedCounts) {
+        for (Map.Entry<String, Integer> entry : addedCounts.entrySet()) {
+            add(counts, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * The script's body or one of its templates.
+     */
+    private static class Scope {
+        private final Cost cost = new Cost();
+        private final List<Call> calls = new ArrayList<>();
+        private int loopDepth;
+        private Cost totalCost;
+    }
+
+    private static class Call {
+        private final String templateVariable;
+        private final int loopDepth;
+
+        Call(String templateVariable, int loopDepth) {
+            this.templateVariable = templateVariable;
+            this.loopDepth = loopDepth;
+        }
+    }
+
+    private static class Cost {
+        private int loopDepth;
+        // the data-sly-use objects instantiated by the scope, per identifier
+        private final Map<String, Integer> uses = new HashMap<>();
+        private final Map<String, Integer> usesInLoops = new HashMap<>();
+        private int formatCalls;
+        private int formatCallsInLoops;
+        private int callDepth;
+
+        Cost copy() {
+            Cost copy = new Cost();
+            copy.loopDepth = loopDepth;
+            copy.uses.putAll(uses);
+            copy.usesInLoops.putAll(usesInLoops);
+            copy.formatCalls = formatCalls;
+            copy.formatCallsInLoops = formatCallsInLoops;
+            copy.callDepth = callDepth;
+            return copy;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
@@ -43,6 +44,11 @@ public class ScriptCompilationUnit implements CompilationUnit {
         this.script = script;
     }
 
+    public ScriptCompilationUnit(String scriptName, InputStream inputStream) {
+        reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), _16K);
+        this.scriptName = scriptName;
+    }
+
     @Override
     public String getScriptName() {
         if (scriptName == null) {
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.fork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.sling.maven.htl.compiler.HTLClassInfo;
+import org.apache.sling.maven.htl.compiler.HTLJavaImportsAnalyzer;
+import org.apache.sling.maven.htl.compiler.RenderCostAnalyzer;
+import org.apache.sling.maven.htl.compiler.ScriptCompilationUnit;
+import org.apache.sling.scripting.sightly.compiler.CompilationResult;
+import org.apache.sling.scripting.sightly.compiler.SightlyCompiler;
+import org.apache.sling.scripting.sightly.java.compiler.JavaClassBackendCompiler;
+import org.apache.sling.scripting.sightly.java.compiler.JavaImportsAnalyzer;
+
+/**
+ * Entry point of the JVMs forked by the {@link CompilerWorkerPool}. The worker reads the compiler configuration and then the scripts to
+ * compile from its standard input and writes the compilation results to its standard output, until the pool signals that there are no
+ * more scripts to compile.
+ */
+public final class CompilerWorker {
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    CompilerWorker(DataInputStream in, DataOutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        // the standard output is reserved for the communication with the pool
+        System.setOut(System.err);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        new CompilerWorker(in, out).run();
+    }
+
+    void run() throws IOException {
+        List<String> allowedExpressionOptions = WorkerProtocol.readStrings(in);
+        List<String> ignoreImports = WorkerProtocol.readStrings(in);
+        boolean analyzeRenderCost = in.readBoolean();
+        SightlyCompiler compiler = SightlyCompiler.withKnownExpressionOptions(allowedExpressionOptions == null ?
+                Collections.<String>emptySet() : new HashSet<String>(allowedExpressionOptions));
+        JavaImportsAnalyzer javaImportsAnalyzer = new HTLJavaImportsAnalyzer(ignoreImports == null ? Collections.<String>emptySet() :
+                new HashSet<String>(ignoreImports));
+        while (in.readBoolean()) {
+            String scriptName = WorkerProtocol.readString(in);
+            List<String> classNames = WorkerProtocol.readStrings(in);
+            byte[] content = WorkerProtocol.readBytes(in);
+            ScriptCompilationUnit compilationUnit = new ScriptCompilationUnit(scriptName, new ByteArrayInputStream(content));
+            CompilationResult result;
+            List<String> javaSourceCodes = null;
+            RenderCostAnalyzer renderCostAnalyzer = analyzeRenderCost ? new RenderCostAnalyzer() : null;
+            if (classNames == null) {
+                result = renderCostAnalyzer == null ? compiler.compile(compilationUnit) : compiler.compile(compilationUnit,
+                        renderCostAnalyzer);
+            } else {
+                JavaClassBackendCompiler backendCompiler = new JavaClassBackendCompiler(javaImportsAnalyzer);
+                result = compiler.compile(compilationUnit, renderCostAnalyzer == null ? backendCompiler :
+                        RenderCostAnalyzer.with(backendCompiler, renderCostAnalyzer));
+                // identical scripts are compiled once and only their classes are generated separately
+                javaSourceCodes = new ArrayList<>(classNames.size());
+                for (String className : classNames) {
+                    int lastDot = className.lastIndexOf('.');
+                    javaSourceCodes.add(backendCompiler.build(HTLClassInfo.of(lastDot < 0 ? "" : className.substring(0, lastDot),
+                            className.substring(lastDot + 1))));
+                }
+            }
+            compilationUnit.dispose();
+            WorkerProtocol.writeMessages(out, result.getWarnings());
+            WorkerProtocol.writeMessages(out, result.getErrors());
+            WorkerProtocol.writeStrings(out, javaSourceCodes);
+            WorkerProtocol.writeRenderCost(out, renderCostAnalyzer == null ? null : renderCostAnalyzer.getRenderCost());
+            out.flush();
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,366 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.fork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.sling.maven.htl.compiler.RenderCost;
+import org.apache.sling.scripting.sightly.compiler.CompilerMessage;
+
+/**
+ * Compiles HTL scripts in a pool of forked JVMs running the {@link CompilerWorker}. The scripts' content is sent to the workers
+ * through their standard input, while the compilation results are read from the workers' standard output.
+ * <p>
+ * When an AppCDS archive is configured, the workers are started from that archive if it exists. Otherwise the first worker creates it
+ * when exiting, so that the workers forked by the next builds start faster. The archive's name is suffixed with a hash of the Java
+ * runtime and of the class path, since the JVM silently ignores the archives created for other JAR files; failing to create the archive
+ * doesn't fail the compilation.
+ */
+public class CompilerWorkerPool {
+
+    private static final int APP_CDS_MIN_JAVA_VERSION = 13;
+    private static final int UNIFIED_LOGGING_MIN_JAVA_VERSION = 9;
+    private static final long WORKER_EXIT_TIMEOUT_SECONDS = 30;
+    private static final long CRASHED_WORKER_EXIT_TIMEOUT_SECONDS = 5;
+
+    private final List<String> jvmArguments;
+    private final String classPath;
+    private final int size;
+    private final File appCdsArchive;
+    private final Set<String> allowedExpressionOptions;
+    private final Set<String> ignoreImports;
+    private final boolean analyzeRenderCost;
+    private final Log log;
+
+    /**
+     * @param jvmArguments             the arguments passed to the forked JVMs (e.g. heap settings)
+     * @param classPath                the class path of the forked JVMs; it has to contain the HTL compilers and this plugin
+     * @param size                     the maximum number of forked JVMs
+     * @param appCdsArchive            the AppCDS archive of the forked JVMs, whose name will be suffixed with the hash of the Java
+     *                                 runtime and of the class path; {@code null} disables the usage of AppCDS
+     * @param allowedExpressionOptions the additional expression options known by the HTL compiler
+     * @param ignoreImports            the Java packages ignored when generating the import statements of the transpiled Java classes
+     * @param analyzeRenderCost        {@code true} if the workers should also compute the scripts' {@link RenderCost}
+     * @param log                      the log to which the failures that don't affect the compilation results are reported
+     */
+    public CompilerWorkerPool(List<String> jvmArguments, String classPath, int size, File appCdsArchive,
+                              Set<String> allowedExpressionOptions, Set<String> ignoreImports, boolean analyzeRenderCost, Log log) {
+        this.jvmArguments = new ArrayList<>(jvmArguments);
+        this.classPath = classPath;
+        this.size = Math.max(1, size);
+        this.appCdsArchive = isAppCdsSupported() && appCdsArchive != null ? getClassPathArchive(appCdsArchive, classPath) : null;
+        this.allowedExpressionOptions = allowedExpressionOptions == null ? null : new HashSet<>(allowedExpressionOptions);
+        this.ignoreImports = ignoreImports == null ? null : new HashSet<>(ignoreImports);
+        this.analyzeRenderCost = analyzeRenderCost;
+        this.log = log;
+    }
+
+    /**
+     * Checks if the JVM running the build, whose installation is also used for the forked JVMs, is able to create dynamic AppCDS
+     * archives.
+     *
+     * @return {@code true} if AppCDS archives can be used, {@code false} otherwise
+     */
+    public static boolean isAppCdsSupported() {
+        return getJavaVersion() >= APP_CDS_MIN_JAVA_VERSION;
+    }
+
+    /**
+     * Checks if the classes of a class path can be stored in an AppCDS archive, which is only the case for classes loaded from JAR files.
+     *
+     * @param classPath the class path of the forked JVMs
+     * @return {@code true} if the class path doesn't contain any folder, {@code false} otherwise
+     */
+    public static boolean isAppCdsArchivable(String classPath) {
+        for (String entry : StringUtils.split(classPath, File.pathSeparatorChar)) {
+            if (new File(entry).isDirectory()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the AppCDS archive actually used by the forked JVMs.
+     *
+     * @return the AppCDS archive, or {@code null} if AppCDS is not used
+     */
+    public File getAppCdsArchive() {
+        return appCdsArchive;
+    }
+
+    /**
+     * Suffixes the archive's name with a hash of the Java runtime and of the class path's JAR files, so that upgrading either of them
+     * leads to a new archive instead of one which the JVM would ignore.
+     */
+    private static File getClassPathArchive(File appCdsArchive, String classPath) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform has to support SHA-256.", e);
+        }
+        digest.update((System.getProperty("java.home") + File.pathSeparator + System.getProperty("java.vm.version"))
+                .getBytes(StandardCharsets.UTF_8));
+        for (String entry : StringUtils.split(classPath, File.pathSeparatorChar)) {
+            File file = new File(entry);
+            digest.update(String.format("%s%s%d:%d", File.pathSeparator, file.getAbsolutePath(), file.length(), file.lastModified())
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        String name = appCdsArchive.getName();
+        String extension = FilenameUtils.getExtension(name);
+        return new File(appCdsArchive.getAbsoluteFile().getParentFile(), String.format("%s-%016x%s", FilenameUtils.removeExtension(name),
+                ByteBuffer.wrap(digest.digest()).getLong(), extension.isEmpty() ? "" : "." + extension));
+    }
+
+    /**
+     * Compiles the requested scripts in the forked JVMs.
+     *
+     * @param requests the compilation requests
+     * @return the compilation results, in the order of the requests
+     * @throws IOException if a forked JVM fails; the message names the failed JVM and its exit status
+     */
+    public List<ForkedCompilationResult> compile(final List<Request> requests) throws IOException {
+        final ForkedCompilationResult[] results = new ForkedCompilationResult[requests.size()];
+        if (requests.isEmpty()) {
+            return Arrays.asList(results);
+        }
+        final AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(size, requests.size());
+        boolean createAppCdsArchive = appCdsArchive != null && !appCdsArchive.isFile();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                // concurrent JVMs cannot dump the same archive, so only the first one creates it
+                final boolean createsAppCdsArchive = createAppCdsArchive && i == 0;
+                final List<String> command = getCommand(createsAppCdsArchive, !createAppCdsArchive);
+                final int id = i + 1;
+                futures.add(executor.submit(() -> {
+                    try (Worker worker = new Worker(id, command, createsAppCdsArchive)) {
+                        int index;
+                        while ((index = next.getAndIncrement()) < requests.size()) {
+                            results[index] = worker.compile(requests.get(index));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the HTL compiler workers.");
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return Arrays.asList(results);
+    }
+
+    private List<String> getCommand(boolean createAppCdsArchive, boolean useAppCdsArchive) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+        if (getJavaVersion() >= UNIFIED_LOGGING_MIN_JAVA_VERSION) {
+            // the JVM logs warnings to the standard output by default, which is reserved for the communication with the pool
+            command.add("-Xlog:disable");
+            // the CDS warnings are about classes which cannot be archived (e.g. old class file versions) and don't need any action
+            command.add(isAppCdsSupported() ? "-Xlog:all=warning,cds*=off:stderr" : "-Xlog:all=warning:stderr");
+        }
+        if (appCdsArchive != null) {
+            if (createAppCdsArchive) {
+                File parent = appCdsArchive.getAbsoluteFile().getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException(String.format("Unable to create the folder of the AppCDS archive {%s}.", appCdsArchive));
+                }
+                command.add("-XX:ArchiveClassesAtExit=" + appCdsArchive.getAbsolutePath());
+            } else if (useAppCdsArchive) {
+                command.add("-XX:SharedArchiveFile=" + appCdsArchive.getAbsolutePath());
+                command.add("-Xshare:auto");
+            }
+        }
+        command.addAll(jvmArguments);
+        command.add("-cp");
+        command.add(classPath);
+        command.add(CompilerWorker.class.getName());
+        return command;
+    }
+
+    private static int getJavaVersion() {
+        String version = System.getProperty("java.specification.version", "");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Describes a script to compile.
+     */
+    public static final class Request {
+
+        private final String scriptName;
+        private final List<String> classNames;
+        private final byte[] content;
+
+        /**
+         * @param scriptName the name of the script
+         * @param classNames the fully qualified names of the Java classes to which the script should be transpiled (one for each script
+         *                   with the same content), or {@code null} if the script should only be validated
+         * @param content    the script's content
+         */
+        public Request(String scriptName, List<String> classNames, byte[] content) {
+            this.scriptName = scriptName;
+            this.classNames = classNames == null ? null : new ArrayList<>(classNames);
+            this.content = content;
+        }
+    }
+
+    private class Worker implements Closeable {
+
+        private final int id;
+        private final boolean createsAppCdsArchive;
+        private final Process process;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+
+        Worker(int id, List<String> command, boolean createsAppCdsArchive) throws IOException {
+            this.id = id;
+            this.createsAppCdsArchive = createsAppCdsArchive;
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            try {
+                process = processBuilder.start();
+            } catch (IOException e) {
+                throw new IOException(String.format("Unable to start HTL compiler worker #%d with command {%s}.", id,
+                        StringUtils.join(command, ' ')), e);
+            }
+            out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            WorkerProtocol.writeStrings(out, allowedExpressionOptions);
+            WorkerProtocol.writeStrings(out, ignoreImports);
+            out.writeBoolean(analyzeRenderCost);
+        }
+
+        ForkedCompilationResult compile(Request request) throws IOException {
+            try {
+                out.writeBoolean(true);
+                WorkerProtocol.writeString(out, request.scriptName);
+                WorkerProtocol.writeStrings(out, request.classNames);
+                WorkerProtocol.writeBytes(out, request.content);
+                out.flush();
+                List<CompilerMessage> warnings = WorkerProtocol.readMessages(in, request.scriptName);
+                List<CompilerMessage> errors = WorkerProtocol.readMessages(in, request.scriptName);
+                List<String> javaSourceCodes = WorkerProtocol.readStrings(in);
+                RenderCost renderCost = WorkerProtocol.readRenderCost(in);
+                return new ForkedCompilationResult(warnings, errors, javaSourceCodes, renderCost);
+            } catch (IOException e) {
+                // a closed pipe, on either side
+                throw new IOException(String.format("HTL compiler worker #%d terminated unexpectedly with exit status %s while " +
+                        "compiling script {%s}.", id, getExitStatus(CRASHED_WORKER_EXIT_TIMEOUT_SECONDS), request.scriptName), e);
+            }
+        }
+
+        /**
+         * Waits for the worker to terminate and returns its exit status, or {@code "unknown"} if it is still running.
+         */
+        private String getExitStatus(long timeoutSeconds) throws InterruptedIOException {
+            try {
+                return process.waitFor(timeoutSeconds, TimeUnit.SECONDS) ? Integer.toString(process.exitValue()) : "unknown";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the HTL compiler worker to terminate.");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.writeBoolean(false);
+                out.close();
+            } catch (IOException e) {
+                // the worker has already terminated
+            }
+            try {
+                if (!process.waitFor(WORKER_EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                    throw new IOException(String.format("HTL compiler worker #%d did not terminate in %d seconds.", id,
+                            WORKER_EXIT_TIMEOUT_SECONDS));
+                }
+                if (process.exitValue() != 0) {
+                    if (!createsAppCdsArchive) {
+                        throw new IOException(String.format("HTL compiler worker #%d exited with status %d.", id, process.exitValue()));
+                    }
+                    // the archive is dumped after the worker has sent all its compilation results
+                    FileUtils.deleteQuietly(appCdsArchive);
+                    log.warn(String.format("HTL compiler worker #%d could not create the AppCDS archive {%s} and exited with status %d; " +
+                            "the next builds will try to create it again.", id, appCdsArchive, process.exitValue()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+                throw new InterruptedIOException("Interrupted while waiting for the HTL compiler worker to terminate.");
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.fork;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sling.maven.htl.compiler.HTLCompilationResult;
+import org.apache.sling.maven.htl.compiler.RenderCost;
+import org.apache.sling.scripting.sightly.compiler.CompilerMessage;
+
+/**
+ * Compilation result received from a {@link CompilerWorker}. Since the script was compiled in another JVM, the result doesn't provide
+ * access to the script's command stream.
+ */
+public class ForkedCompilationResult extends HTLCompilationResult {
+
+    private final List<String> javaSourceCodes;
+    private final RenderCost renderCost;
+
+    ForkedCompilationResult(List<CompilerMessage> warnings, List<CompilerMessage> errors, List<String> javaSourceCodes,
+                            RenderCost renderCost) {
+        super(null, warnings, errors);
+        this.javaSourceCodes = javaSourceCodes;
+        this.renderCost = renderCost;
+    }
+
+    /**
+     * @return the source code of the Java classes the script was transpiled to, in the order of the requested class names, or
+     * {@code null} if no class names were requested
+     */
+    public List<String> getJavaSourceCodes() {
+        return javaSourceCodes == null ? null : Collections.unmodifiableList(javaSourceCodes);
+    }
+
+    /**
+     * @return the script's render cost, or {@code null} if the pool was not configured to analyse it
+     */
+    public RenderCost getRenderCost() {
+        return renderCost;
+    }
+}
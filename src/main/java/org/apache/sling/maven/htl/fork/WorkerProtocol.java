@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.fork;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.sling.maven.htl.compiler.HTLCompilerMessage;
+import org.apache.sling.maven.htl.compiler.RenderCost;
+import org.apache.sling.scripting.sightly.compiler.CompilerMessage;
+
+/**
+ * Serialisation helpers for the data exchanged between the {@link CompilerWorkerPool} and the {@link CompilerWorker}s. Strings are
+ * written as length-prefixed UTF-8 byte sequences, with a negative length standing for {@code null}.
+ */
+final class WorkerProtocol {
+
+    private WorkerProtocol() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(values.size());
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    static void writeMessages(DataOutputStream out, List<CompilerMessage> messages) throws IOException {
+        out.writeInt(messages.size());
+        for (CompilerMessage message : messages) {
+            writeString(out, message.getMessage());
+            out.writeInt(message.getLine());
+            out.writeInt(message.getColumn());
+        }
+    }
+
+    static List<CompilerMessage> readMessages(DataInputStream in, String scriptName) throws IOException {
+        int size = in.readInt();
+        List<CompilerMessage> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String message = readString(in);
+            int line = in.readInt();
+            int column = in.readInt();
+            messages.add(new HTLCompilerMessage(scriptName, message, line, column));
+        }
+        return messages;
+    }
+
+    static void writeRenderCost(DataOutputStream out, RenderCost renderCost) throws IOException {
+        out.writeBoolean(renderCost != null);
+        if (renderCost != null) {
+            out.writeInt(renderCost.getLoopDepth());
+            out.writeInt(renderCost.getUsesInLoops());
+            writeString(out, renderCost.getRepeatedUse());
+            out.writeInt(renderCost.getFormatCallsInLoops());
+            out.writeInt(renderCost.getCallDepth());
+        }
+    }
+
+    static RenderCost readRenderCost(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int loopDepth = in.readInt();
+        int usesInLoops = in.readInt();
+        String repeatedUse = readString(in);
+        return new RenderCost(loopDepth, usesInLoops, repeatedUse, in.readInt(), in.readInt());
+    }
+}
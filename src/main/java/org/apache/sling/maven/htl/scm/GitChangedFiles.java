@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.scm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Determines the files changed in a local Git working tree since a base revision. The base revision is only resolved locally, therefore
+ * no network access is performed. The {@code git} executable has to be available on the {@code PATH}.
+ */
+public class GitChangedFiles {
+
+    private static final File NULL_FILE = new File(System.getProperty("os.name", "").startsWith("Windows") ? "NUL" : "/dev/null");
+
+    private final File directory;
+
+    /**
+     * @param directory a directory from the Git working tree
+     */
+    public GitChangedFiles(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the files which were added or modified since the merge base of {@code baseRef} and {@code HEAD}, including the
+     * uncommitted and the untracked (but not ignored) files.
+     *
+     * @param baseRef the base revision (e.g. a branch name, a tag or a commit id)
+     * @return the canonical files added or modified since the base revision, or {@code null} if {@code directory} is not part of a Git
+     * working tree or if {@code baseRef} cannot be resolved
+     * @throws IOException if the changed files cannot be listed; the message names the failed Git command and its exit status
+     */
+    public Set<File> getChangedFiles(String baseRef) throws IOException {
+        String topLevel = git(directory, "rev-parse", "--show-toplevel");
+        if (topLevel == null) {
+            return null;
+        }
+        File workingTree = new File(topLevel.trim());
+        if (git(workingTree, "rev-parse", "--verify", "--quiet", baseRef + "^{commit}") == null) {
+            return null;
+        }
+        String mergeBase = git(workingTree, "merge-base", baseRef, "HEAD");
+        String base = mergeBase == null ? baseRef : mergeBase.trim();
+        String changed = run(workingTree, "diff", "--name-only", "--no-ext-diff", "--diff-filter=AMR", "-z", base, "--");
+        String untracked = run(workingTree, "ls-files", "--others", "--exclude-standard", "-z");
+        Set<File> changedFiles = new HashSet<>();
+        for (String output : Arrays.asList(changed, untracked)) {
+            for (String path : StringUtils.split(output, '\0')) {
+                changedFiles.add(new File(workingTree, path).getCanonicalFile());
+            }
+        }
+        return changedFiles;
+    }
+
+    /**
+     * Runs a Git command and returns its standard output, or {@code null} if the command could not be run or if it failed.
+     */
+    private static String git(File workingDirectory, String... arguments) {
+        try {
+            return run(workingDirectory, arguments);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs a Git command and returns its standard output.
+     *
+     * @throws IOException if the command could not be run or if it failed
+     */
+    private static String run(File workingDirectory, String... arguments) throws IOException {
+        List<String> command = new ArrayList<>(arguments.length + 1);
+        command.add("git");
+        command.addAll(Arrays.asList(arguments));
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.directory(workingDirectory);
+        processBuilder.redirectInput(ProcessBuilder.Redirect.from(NULL_FILE));
+        processBuilder.redirectError(ProcessBuilder.Redirect.to(NULL_FILE));
+        Process process = processBuilder.start();
+        String output;
+        try (InputStream inputStream = process.getInputStream()) {
+            output = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+        int exitStatus;
+        try {
+            exitStatus = process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while waiting for {%s}.", StringUtils.join(command, ' ')));
+        }
+        if (exitStatus != 0) {
+            throw new IOException(String.format("Command {%s} exited with status %d in {%s}.", StringUtils.join(command, ' '),
+                    exitStatus, workingDirectory));
+        }
+        return output;
+    }
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.testing.MojoRule;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.sling.maven.htl.benchmark.RenderBenchmark;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+public class BenchmarkMojoTest {
+
+    private static final String BENCHMARK_POM = "benchmark.pom.xml";
+    private static final String LIST_CLASS = "apps.projects.list__002e__html";
+    private static final String LIST_HTML = "/apps/projects/list.html";
+    private static final String TOO_LARGE_RESOURCES = "target/too-large-resources";
+    private static final String TOO_LARGE_HTML = TOO_LARGE_RESOURCES + "/apps/projects/large.html";
+
+    @Rule
+    public MojoRule mojoRule = new MojoRule() {
+        @Override
+        protected void before() throws Throwable {
+            super.before();
+            /*
+             * Make sure the base directory is initialised properly for this test
+             */
+            System.setProperty("basedir", new File("src" + File.separator + "test" + File.separator + "resources" + File.separator +
+                    "test-project").getAbsolutePath());
+        }
+    };
+
+    @After
+    public void tearDown() {
+        File baseDir = new File(System.getProperty("basedir"));
+        FileUtils.deleteQuietly(new File(baseDir, "target"));
+    }
+
+    @Test
+    public void testBenchmark() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        MavenProject project = readMavenProject(baseDir, BENCHMARK_POM);
+        validate(project);
+        BenchmarkMojo benchmarkMojo = getBenchmarkMojo(project);
+        Log log = spy(benchmarkMojo.getLog());
+        benchmarkMojo.setLog(log);
+        benchmarkMojo.execute();
+
+        verify(log).info(contains(LIST_HTML + " (" + LIST_CLASS + ")"));
+        Map<String, RenderBenchmark.Result> results = benchmarkMojo.getResults();
+        assertEquals("Expected 1 benchmarked script.", 1, results.size());
+        RenderBenchmark.Result result = results.get(LIST_CLASS);
+        assertNotNull("Expected list.html to be benchmarked.", result);
+        assertTrue("Expected list.html to produce output.", result.getOutputSize() > 0);
+        assertTrue("Expected a positive throughput for list.html.", result.getThroughput() > 0);
+        String report = FileUtils.readFileToString(new File(baseDir, "target/htl-benchmark/report.csv"), StandardCharsets.UTF_8);
+        assertTrue("Expected the benchmark report to name the script of each class.", report.contains(LIST_HTML + "," + LIST_CLASS +
+                ","));
+
+        Map<String, Integer> methodSizes = benchmarkMojo.getMethodSizes().get(LIST_CLASS);
+        assertNotNull("Expected the method sizes of list.html's class.", methodSizes);
+        assertFalse("Expected list.html's class to declare methods.", methodSizes.isEmpty());
+        for (Map.Entry<String, Integer> methodSize : methodSizes.entrySet()) {
+            assertTrue("Unexpected size for method " + methodSize.getKey() + ": " + methodSize.getValue(),
+                    methodSize.getValue() > 0 && methodSize.getValue() < 8000);
+        }
+        String methodSizesReport = FileUtils.readFileToString(new File(baseDir, "target/htl-benchmark/method-sizes.csv"),
+                StandardCharsets.UTF_8);
+        assertTrue("Expected the method sizes report to name the script of each method.", methodSizesReport.contains(LIST_HTML + "," +
+                LIST_CLASS + ",render("));
+    }
+
+    @Test
+    public void testMethodSizeWarningLimit() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        MavenProject project = readMavenProject(baseDir, BENCHMARK_POM);
+        project.getProperties().setProperty("htl.methodSizeWarningLimit", "1");
+        project.getProperties().setProperty("htl.benchmark.render", "false");
+        validate(project);
+        BenchmarkMojo benchmarkMojo = getBenchmarkMojo(project);
+        Log log = spy(benchmarkMojo.getLog());
+        benchmarkMojo.setLog(log);
+        benchmarkMojo.execute();
+
+        verify(log).warn(contains("Method " + LIST_CLASS + "#render"));
+        verify(log, atLeastOnce()).warn(contains("transpiled from script " + LIST_HTML));
+        verify(log).warn(contains("may not be JIT-compiled"));
+        verify(log, never()).error(anyString());
+        assertTrue("Did not expect list.html to be rendered.", benchmarkMojo.getResults().isEmpty());
+    }
+
+    @Test
+    public void testMethodSizeErrorLimit() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        MavenProject project = readMavenProject(baseDir, BENCHMARK_POM);
+        project.getProperties().setProperty("htl.methodSizeErrorLimit", "1");
+        validate(project);
+        BenchmarkMojo benchmarkMojo = getBenchmarkMojo(project);
+        Log log = spy(benchmarkMojo.getLog());
+        benchmarkMojo.setLog(log);
+        try {
+            benchmarkMojo.execute();
+            fail("Expected the methods above the error limit to fail the build.");
+        } catch (MojoFailureException e) {
+            assertTrue("Unexpected failure: " + e.getMessage(), e.getMessage().contains("exceed the configured limit of 1 bytes"));
+        }
+        verify(log).error(contains("Method " + LIST_CLASS + "#render"));
+        verify(log, atLeastOnce()).error(contains("transpiled from script " + LIST_HTML));
+        assertTrue("Did not expect list.html to be rendered.", benchmarkMojo.getResults().isEmpty());
+    }
+
+    @Test
+    public void testMethodAboveJvmLimit() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        File script = new File(baseDir, TOO_LARGE_HTML);
+        StringBuilder template = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            template.append("<p data-sly-test=\"${properties.test").append(i).append("}\">${properties.title @ context='html'}</p>\n");
+        }
+        FileUtils.writeStringToFile(script, template.toString(), StandardCharsets.UTF_8);
+        MavenProject project = readMavenProject(baseDir, BENCHMARK_POM);
+        project.getProperties().setProperty("htl.sourceDirectory", TOO_LARGE_RESOURCES);
+        validate(project);
+        BenchmarkMojo benchmarkMojo = getBenchmarkMojo(project);
+        Log log = spy(benchmarkMojo.getLog());
+        benchmarkMojo.setLog(log);
+        try {
+            benchmarkMojo.execute();
+            fail("Expected the class with a method above the JVM's limit to fail the build.");
+        } catch (MojoFailureException e) {
+            assertTrue("Unexpected failure: " + e.getMessage(), e.getMessage().contains("exceeding the JVM's limit of 65535 bytes"));
+        }
+        verify(log).error(contains("Class apps.projects.large__002e__html, transpiled from script /apps/projects/large.html, has " +
+                "methods above the JVM's limit"));
+    }
+
+    private void validate(MavenProject project) throws Exception {
+        ValidateMojo validateMojo = getValidateMojo(project);
+        validateMojo.execute();
+        assertFalse("Did not expect compilation errors.", validateMojo.hasErrors());
+    }
+
+    private BenchmarkMojo getBenchmarkMojo(MavenProject project) throws Exception {
+        return (BenchmarkMojo) mojoRule.lookupConfiguredMojo(mojoRule.newMavenSession(project), mojoRule.newMojoExecution("benchmark"));
+    }
+
+    private ValidateMojo getValidateMojo(MavenProject project) throws Exception {
+        Logger log = new ConsoleLogger();
+        DefaultBuildContext buildContext = new DefaultBuildContext();
+        buildContext.enableLogging(log);
+        ValidateMojo validateMojo = (ValidateMojo) mojoRule.lookupConfiguredMojo(mojoRule.newMavenSession(project),
+                mojoRule.newMojoExecution("validate"));
+        validateMojo.setBuildContext(buildContext);
+        return validateMojo;
+    }
+
+    /**
+     * Copied from {@link org.apache.maven.plugin.testing.MojoRule#readMavenProject(java.io.File)} but customized to allow custom pom names
+     */
+    private MavenProject readMavenProject(File basedir, String pomFileName) throws Exception {
+        File pom = new File(basedir, pomFileName);
+        MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setBaseDirectory(basedir);
+        ProjectBuildingRequest configuration = request.getProjectBuildingRequest();
+        configuration.setRepositorySession(new DefaultRepositorySystemSession());
+        MavenProject project = mojoRule.lookup(ProjectBuilder.class).build(pom, configuration).getProject();
+        Assert.assertNotNull(project);
+        return project;
+    }
+}
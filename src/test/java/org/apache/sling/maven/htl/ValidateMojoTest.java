@@ -19,24 +19,37 @@
 package org.apache.sling.maven.htl;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.maven.execution.DefaultMavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugin.testing.MojoRule;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.ProjectBuilder;
 import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.sling.maven.htl.compiler.RenderCost;
 import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.logging.console.ConsoleLogger;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonatype.plexus.build.incremental.BuildContext;
@@ -50,8 +63,11 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -78,6 +94,29 @@ public class ValidateMojoTest {
     private static final String NON_DEFAULT_OPTIONS_POM = "non-default-options.pom.xml";
     private static final String DATA_SLY_TEST_CONSTANT_VALUES_POM_XML = "data-sly-test-constant-values.pom.xml";
     private static final String FAIL_ON_ERRORS_FALSE_POM_XML = "fail-on-errors-false.pom.xml";
+    private static final String SOURCE_ARCHIVE_POM = "source-archive.pom.xml";
+    private static final String SOURCE_ARCHIVE = "target/content-package.zip";
+    private static final String SOURCE_ARCHIVE_EXCLUDES_POM = "source-archive-excludes.pom.xml";
+    private static final String STATIC_SCRIPTS_POM = "static-scripts.pom.xml";
+    private static final String STATIC_HTML = "src/main/static-resources/apps/projects/static.html";
+    private static final String FORK_POM = "fork.pom.xml";
+    private static final String FORK_FAILURE_POM = "fork-failure.pom.xml";
+    private static final String CHANGED_SINCE_UNKNOWN_REF_POM = "changed-since-unknown-ref.pom.xml";
+    private static final String CHANGED_SINCE_POM = "changed-since.pom.xml";
+    private static final String CHANGED_SINCE_GENERATE_JAVA_CLASSES_POM = "changed-since-generate-java-classes.pom.xml";
+    private static final String GIT_PROJECT = "target/git-project";
+    private static final String DUPLICATE_SCRIPTS_POM = "duplicate-scripts.pom.xml";
+    private static final String SITE1_WARNING_HTML = "src/main/duplicate-resources/apps/site1/components/warning.html";
+    private static final String SITE2_WARNING_HTML = "src/main/duplicate-resources/apps/site2/components/warning.html";
+    private static final String COLLIDING_SCRIPTS_POM = "colliding-scripts.pom.xml";
+    private static final String DASHED_SCRIPT_HTML = "src/main/colliding-resources/apps/projects/my-script.html";
+    private static final String ESCAPED_SCRIPT_HTML = "src/main/colliding-resources/apps/projects/my__002d__script.html";
+    private static final String CASE_COLLIDING_SCRIPTS_POM = "case-colliding-scripts.pom.xml";
+    private static final String CASE_COLLIDING_RESOURCES = "target/case-colliding-resources/apps/projects";
+    private static final String RENDER_COST_POM = "render-cost.pom.xml";
+    private static final String RENDER_COST_ERRORS_POM = "render-cost-errors.pom.xml";
+    private static final String RENDER_COST_REPORT_FAILURE_POM = "render-cost-report-failure.pom.xml";
+    private static final String EXPENSIVE_HTML = "src/main/render-cost-resources/apps/projects/expensive.html";
 
 
     @Rule
@@ -285,6 +324,356 @@ public class ValidateMojoTest {
                 isNull());
     }
 
+    @Test
+    public void testSourceArchive() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        File archive = new File(baseDir, SOURCE_ARCHIVE);
+        createContentPackage(new File(baseDir, "src/main/resources"), archive);
+        ValidateMojo validateMojo = getMojo(baseDir, SOURCE_ARCHIVE_POM);
+        validateMojo.execute();
+        List<File> processedFiles = validateMojo.getProcessedFiles();
+        assertEquals("Expected 2 files to process.", 2, processedFiles.size());
+        assertTrue("Expected script.html to be one of the processed files.", processedFiles.contains(new File(archive,
+                "jcr_root/apps/projects/script.html")));
+        assertTrue("Expected warning.sly to be one of the processed files.", processedFiles.contains(new File(archive,
+                "jcr_root/apps/projects/warning.sly")));
+        assertTrue("Expected compilation warnings.", validateMojo.hasWarnings());
+        assertFalse("Did not expect compilation errors.", validateMojo.hasErrors());
+    }
+
+    @Test
+    public void testSourceArchiveExcludes() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        File archive = new File(baseDir, SOURCE_ARCHIVE);
+        createContentPackage(new File(baseDir, "src/main/duplicate-resources"), archive);
+        ValidateMojo validateMojo = getMojo(baseDir, SOURCE_ARCHIVE_EXCLUDES_POM);
+        validateMojo.execute();
+        List<File> processedFiles = validateMojo.getProcessedFiles();
+        assertEquals("Expected 1 file to process.", 1, processedFiles.size());
+        assertTrue("Expected site1's warning.html to be the processed file.", processedFiles.contains(new File(archive,
+                "jcr_root/apps/site1/components/warning.html")));
+    }
+
+    @Test
+    public void testStaticScripts() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, STATIC_SCRIPTS_POM);
+        validateMojo.execute();
+        List<File> processedFiles = validateMojo.getProcessedFiles();
+        assertEquals("Expected 1 file to process.", 1, processedFiles.size());
+        assertTrue("Expected static.html to be the processed file.", processedFiles.contains(new File(baseDir, STATIC_HTML)));
+        assertEquals("Expected static.html not to be passed through the HTL compiler.", 1, validateMojo.getStaticScripts());
+        assertFalse("Did not expect compilation errors.", validateMojo.hasErrors());
+        assertFalse("Did not expect compilation warnings.", validateMojo.hasWarnings());
+        String generatedSourceCode = FileUtils.readFileToString(new File(baseDir,
+                "target/generated-sources/htl/apps/projects/static__002e__html.java"), StandardCharsets.UTF_8);
+        assertTrue(generatedSourceCode.contains("This page is static."));
+    }
+
+    @Test
+    public void testFork() throws Exception {
+        DefaultBuildContext context = spy(new DefaultBuildContext());
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, FORK_POM, context);
+        validateMojo.execute();
+        List<File> processedFiles = validateMojo.getProcessedFiles();
+        assertEquals("Expected 2 files to process.", 2, processedFiles.size());
+        assertTrue("Expected script.html to be one of the processed files.", processedFiles.contains(new File(baseDir, SCRIPT_HTML)));
+        assertTrue("Expected warning.sly to be one of the processed files.", processedFiles.contains(new File(baseDir, WARNING_SLY)));
+        assertTrue("Expected compilation warnings.", validateMojo.hasWarnings());
+        assertFalse("Did not expect compilation errors.", validateMojo.hasErrors());
+        verify(context, atLeastOnce()).addMessage(eq(new File(baseDir, WARNING_SLY)), anyInt(), anyInt(), anyString(),
+                eq(BuildContext.SEVERITY_WARNING), isNull());
+        String generatedSourceCode = FileUtils.readFileToString(new File(baseDir,
+                "target/generated-sources/htl/apps/projects/script__002e__html.java"), StandardCharsets.UTF_8);
+        assertTrue(generatedSourceCode.contains("apps.projects.Pojo"));
+    }
+
+    @Test
+    public void testForkFailure() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, FORK_FAILURE_POM);
+        try {
+            validateMojo.execute();
+            Assert.fail("Expected the failed worker to fail the build.");
+        } catch (MojoExecutionException e) {
+            assertTrue("Expected the failure to name the forked JVMs: " + e.getMessage(),
+                    e.getMessage().startsWith("Cannot compile the HTL scripts in the forked JVMs"));
+            assertTrue("Expected the failure to name the worker and its exit status: " + e.getMessage(),
+                    e.getMessage().contains("HTL compiler worker #1 terminated unexpectedly with exit status 1"));
+        }
+    }
+
+    @Test
+    public void testChangedSinceUnknownRef() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, CHANGED_SINCE_UNKNOWN_REF_POM);
+        validateMojo.execute();
+        List<File> processedFiles = validateMojo.getProcessedFiles();
+        assertEquals("Expected 1 file to process.", 1, processedFiles.size());
+        assertTrue("Expected script.html to be the only processed file.", processedFiles.contains(new File(baseDir, SCRIPT_HTML)));
+    }
+
+    @Test
+    public void testChangedSinceGenerateJavaClasses() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, CHANGED_SINCE_GENERATE_JAVA_CLASSES_POM);
+        Log log = spy(validateMojo.getLog());
+        validateMojo.setLog(log);
+        validateMojo.execute();
+        List<File> processedFiles = validateMojo.getProcessedFiles();
+        assertEquals("Expected 1 file to process.", 1, processedFiles.size());
+        assertTrue("Expected script.html to be processed although it was not changed.", processedFiles.contains(new File(baseDir,
+                SCRIPT_HTML)));
+        verify(log).warn(contains("The changedSince parameter is ignored when generating Java classes"));
+    }
+
+    @Test
+    public void testChangedSince() throws Exception {
+        Assume.assumeTrue("Git is not available.", isGitAvailable());
+        File baseDir = new File(System.getProperty("basedir"));
+        File repository = new File(baseDir, GIT_PROJECT);
+        File scripts = new File(repository, "src/main/resources/apps/projects");
+        FileUtils.copyFile(new File(baseDir, CHANGED_SINCE_POM), new File(repository, "pom.xml"));
+        FileUtils.writeStringToFile(new File(repository, ".gitignore"), "ignored.html\n", StandardCharsets.UTF_8);
+        for (String script : new String[] {"modified.html", "unchanged.html", "renamed.html", "deleted.html", "base-only.html"}) {
+            writeScript(new File(scripts, script));
+        }
+        git(repository, "init", "-q");
+        git(repository, "add", "-A");
+        git(repository, "commit", "-q", "-m", "initial");
+        git(repository, "branch", "base");
+
+        // changes committed on HEAD since the merge base
+        writeScript(new File(scripts, "modified.html"));
+        git(repository, "mv", "src/main/resources/apps/projects/renamed.html", "src/main/resources/apps/projects/moved.html");
+        git(repository, "rm", "-q", "src/main/resources/apps/projects/deleted.html");
+        writeScript(new File(scripts, "added.html"));
+        git(repository, "add", "-A");
+        git(repository, "commit", "-q", "-m", "changes");
+        // changes committed on the base branch after the merge base, which have to be ignored
+        git(repository, "checkout", "-q", "base");
+        writeScript(new File(scripts, "base-only.html"));
+        git(repository, "commit", "-q", "-a", "-m", "base changes");
+        git(repository, "checkout", "-q", "-");
+        // uncommitted, untracked and ignored changes
+        writeScript(new File(scripts, "unchanged.html"));
+        git(repository, "checkout", "-q", "--", "src/main/resources/apps/projects/unchanged.html");
+        writeScript(new File(scripts, "untracked.html"));
+        writeScript(new File(scripts, "ignored.html"));
+
+        // a non-canonical base directory, to check that the changed files are matched on their canonical paths
+        File nonCanonicalRepository = new File(baseDir, GIT_PROJECT + "/../" + repository.getName());
+        ValidateMojo validateMojo = getMojo(nonCanonicalRepository, "pom.xml");
+        validateMojo.execute();
+        Set<String> processedScripts = new TreeSet<>();
+        for (File processedFile : validateMojo.getProcessedFiles()) {
+            processedScripts.add(processedFile.getName());
+        }
+        assertEquals("Expected only the scripts changed since the merge base to be processed.",
+                new TreeSet<>(Arrays.asList("added.html", "modified.html", "moved.html", "untracked.html")), processedScripts);
+        assertFalse("Did not expect compilation errors.", validateMojo.hasErrors());
+    }
+
+    @Test
+    public void testChangedSinceGitFailure() throws Exception {
+        Assume.assumeTrue("Git is not available.", isGitAvailable());
+        File baseDir = new File(System.getProperty("basedir"));
+        File repository = new File(baseDir, GIT_PROJECT);
+        File script = new File(repository, "src/main/resources/apps/projects/script.html");
+        FileUtils.copyFile(new File(baseDir, CHANGED_SINCE_POM), new File(repository, "pom.xml"));
+        writeScript(script);
+        git(repository, "init", "-q");
+        git(repository, "add", "-A");
+        git(repository, "commit", "-q", "-m", "initial");
+        git(repository, "branch", "base");
+        writeScript(script);
+        git(repository, "commit", "-q", "-a", "-m", "changes");
+        // the base revision still resolves, but it cannot be diffed anymore
+        String tree = git(repository, "rev-parse", "base^{tree}");
+        FileUtils.forceDelete(new File(repository, ".git/objects/" + tree.substring(0, 2) + "/" + tree.substring(2)));
+
+        ValidateMojo validateMojo = getMojo(repository, "pom.xml");
+        try {
+            validateMojo.execute();
+            Assert.fail("Expected the failed Git command to fail the build.");
+        } catch (MojoExecutionException e) {
+            assertTrue("Expected the failure to name the base revision: " + e.getMessage(),
+                    e.getMessage().startsWith("Cannot determine the files changed since {base}"));
+            assertTrue("Expected the failure to name the Git command and its exit status: " + e.getMessage(),
+                    e.getMessage().contains("git diff") && e.getMessage().contains("exited with status"));
+        }
+    }
+
+    @Test
+    public void testDuplicateScripts() throws Exception {
+        DefaultBuildContext context = spy(new DefaultBuildContext());
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, DUPLICATE_SCRIPTS_POM, context);
+        validateMojo.execute();
+        List<File> processedFiles = validateMojo.getProcessedFiles();
+        assertEquals("Expected 2 files to process.", 2, processedFiles.size());
+        assertEquals("Expected one of the files to be compiled only once.", 1, validateMojo.getDuplicateScripts());
+        assertTrue("Expected compilation warnings.", validateMojo.hasWarnings());
+        for (String script : new String[] {SITE1_WARNING_HTML, SITE2_WARNING_HTML}) {
+            verify(context, atLeastOnce()).addMessage(eq(new File(baseDir, script)), anyInt(), anyInt(), anyString(),
+                    eq(BuildContext.SEVERITY_WARNING), isNull());
+        }
+        for (String site : new String[] {"site1", "site2"}) {
+            String generatedSourceCode = FileUtils.readFileToString(new File(baseDir,
+                    "target/generated-sources/htl/apps/" + site + "/components/warning__002e__html.java"), StandardCharsets.UTF_8);
+            assertTrue(generatedSourceCode.contains("apps." + site + ".components"));
+        }
+    }
+
+    @Test
+    public void testCollidingScripts() throws Exception {
+        DefaultBuildContext context = spy(new DefaultBuildContext());
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, COLLIDING_SCRIPTS_POM, context);
+        try {
+            validateMojo.execute();
+            Assert.fail("Expected the class name collision to fail the build.");
+        } catch (MojoFailureException e) {
+            assertTrue("Expected compilation errors.", validateMojo.hasErrors());
+        }
+        String generatedSourceCode = FileUtils.readFileToString(new File(baseDir,
+                "target/generated-sources/htl/apps/projects/my__002d__script__002e__html.java"), StandardCharsets.UTF_8);
+        // the scripts are processed in the order of the directory listing, so either of them can claim the class first
+        boolean dashedScriptFirst = generatedSourceCode.contains("dashed script");
+        assertTrue("Expected the class to be generated from one of the scripts.", dashedScriptFirst ||
+                generatedSourceCode.contains("escaped script"));
+        assertFalse("Did not expect the class to be overwritten by the second script.", dashedScriptFirst &&
+                generatedSourceCode.contains("escaped script"));
+        File claimingScript = new File(baseDir, dashedScriptFirst ? DASHED_SCRIPT_HTML : ESCAPED_SCRIPT_HTML);
+        File collidingScript = new File(baseDir, dashedScriptFirst ? ESCAPED_SCRIPT_HTML : DASHED_SCRIPT_HTML);
+        verify(context).addMessage(eq(collidingScript), eq(0), eq(0), contains("is transpiled to the same Java class"),
+                eq(BuildContext.SEVERITY_ERROR), isNull());
+        verify(context, never()).addMessage(eq(claimingScript), anyInt(), anyInt(), anyString(), eq(BuildContext.SEVERITY_ERROR),
+                isNull());
+    }
+
+    @Test
+    public void testCaseCollidingScripts() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        // such scripts cannot be checked in, as they would overwrite each other on case-insensitive file systems
+        File resources = new File(baseDir, CASE_COLLIDING_RESOURCES);
+        FileUtils.deleteQuietly(resources);
+        writeScript(new File(resources, "Script.html"));
+        writeScript(new File(resources, "script.html"));
+        Assume.assumeTrue("The file system is not case-sensitive.", resources.list().length == 2);
+        DefaultBuildContext context = spy(new DefaultBuildContext());
+        ValidateMojo validateMojo = getMojo(baseDir, CASE_COLLIDING_SCRIPTS_POM, context);
+        validateMojo.execute();
+
+        assertFalse("Did not expect errors for scripts whose classes differ only in case.", validateMojo.hasErrors());
+        assertTrue("Expected a warning for the scripts whose classes differ only in case.", validateMojo.hasWarnings());
+        verify(context).addMessage(any(File.class), eq(0), eq(0), contains("differs only in case from the one generated for script"),
+                eq(BuildContext.SEVERITY_WARNING), isNull());
+        File generatedSources = new File(baseDir, "target/generated-sources/htl/apps/projects");
+        assertTrue(new File(generatedSources, "Script__002e__html.java").isFile());
+        assertTrue(new File(generatedSources, "script__002e__html.java").isFile());
+    }
+
+    @Test
+    public void testRenderCost() throws Exception {
+        DefaultBuildContext context = spy(new DefaultBuildContext());
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, RENDER_COST_POM, context);
+        validateMojo.execute();
+        assertFalse("Did not expect compilation errors.", validateMojo.hasErrors());
+        assertTrue("Expected render cost warnings.", validateMojo.hasWarnings());
+        RenderCost renderCost = validateMojo.getRenderCosts().get(new File(baseDir, EXPENSIVE_HTML));
+        assertNotNull("Expected the render cost of expensive.html.", renderCost);
+        assertEquals(3, renderCost.getLoopDepth());
+        assertEquals(1, renderCost.getCallDepth());
+        assertEquals(1, renderCost.getFormatCallsInLoops());
+        // once in the innermost loop and once in the template called from it; cell.js is only instantiated once per iteration
+        assertEquals(2, renderCost.getUsesInLoops());
+        assertEquals("apps.projects.Pojo", renderCost.getRepeatedUse());
+        verify(context, atLeastOnce()).addMessage(eq(new File(baseDir, EXPENSIVE_HTML)), eq(0), eq(0),
+                contains("Loops are nested 3 levels deep"), eq(BuildContext.SEVERITY_WARNING), isNull());
+        verify(context).addMessage(eq(new File(baseDir, EXPENSIVE_HTML)), eq(0), eq(0),
+                contains("The data-sly-use object apps.projects.Pojo is instantiated 2 times inside loops"),
+                eq(BuildContext.SEVERITY_WARNING), isNull());
+        verify(context, never()).addMessage(any(File.class), anyInt(), anyInt(), contains("cell.js"), anyInt(), any());
+        assertTrue(new File(baseDir, "target/htl/render-cost.csv").isFile());
+    }
+
+    @Test
+    public void testRenderCostAsErrors() throws Exception {
+        DefaultBuildContext context = spy(new DefaultBuildContext());
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, RENDER_COST_ERRORS_POM, context);
+        try {
+            validateMojo.execute();
+            Assert.fail("Expected the render cost errors to fail the build.");
+        } catch (MojoFailureException e) {
+            assertTrue("Expected compilation errors.", validateMojo.hasErrors());
+        }
+        File expensiveScript = new File(baseDir, EXPENSIVE_HTML);
+        verify(context).addMessage(eq(expensiveScript), eq(0), eq(0), contains("1 format / i18n options are evaluated inside loops"),
+                eq(BuildContext.SEVERITY_ERROR), isNull());
+        verify(context).addMessage(eq(expensiveScript), eq(0), eq(0), contains("data-sly-call chains are 1 templates deep"),
+                eq(BuildContext.SEVERITY_ERROR), isNull());
+        verify(context, never()).addMessage(eq(expensiveScript), anyInt(), anyInt(), anyString(), eq(BuildContext.SEVERITY_WARNING),
+                any());
+    }
+
+    @Test
+    public void testRenderCostReportFailure() throws Exception {
+        File baseDir = new File(System.getProperty("basedir"));
+        ValidateMojo validateMojo = getMojo(baseDir, RENDER_COST_REPORT_FAILURE_POM);
+        try {
+            validateMojo.execute();
+            Assert.fail("Expected the render cost report failure to fail the build.");
+        } catch (MojoExecutionException e) {
+            assertEquals("Cannot write the render cost report to {" + new File(baseDir, RENDER_COST_REPORT_FAILURE_POM + "/render-cost.csv")
+                    + "}.", e.getMessage());
+        }
+    }
+
+    private void createContentPackage(File sourceDirectory, File archive) throws IOException {
+        FileUtils.forceMkdirParent(archive);
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive))) {
+            zipOutputStream.putNextEntry(new ZipEntry("META-INF/vault/filter.xml"));
+            zipOutputStream.write("<workspaceFilter version=\"1.0\"/>".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+            for (File script : FileUtils.listFiles(sourceDirectory, null, true)) {
+                String path = sourceDirectory.toURI().relativize(script.toURI()).getPath();
+                zipOutputStream.putNextEntry(new ZipEntry("jcr_root/" + path));
+                FileUtils.copyFile(script, zipOutputStream);
+                zipOutputStream.closeEntry();
+            }
+        }
+    }
+
+    private static void writeScript(File script) throws IOException {
+        // every write produces a different content, so that modifications are always detected
+        FileUtils.writeStringToFile(script, "<p>${properties.title} " + System.nanoTime() + "</p>\n", StandardCharsets.UTF_8);
+    }
+
+    private static boolean isGitAvailable() {
+        try {
+            return new ProcessBuilder("git", "--version").redirectErrorStream(true).start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String git(File repository, String... arguments) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList("git", "-c", "user.name=HTL Maven Plugin", "-c",
+                "user.email=dev@sling.apache.org", "-c", "commit.gpgsign=false"));
+        command.addAll(Arrays.asList(arguments));
+        Process process = new ProcessBuilder(command).directory(repository).redirectErrorStream(true).start();
+        String output = IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8);
+        assertEquals("Command " + command + " failed: " + output, 0, process.waitFor());
+        return output.trim();
+    }
+
     private ValidateMojo getMojo(File baseDir, String pomFile) throws Exception {
         return getMojo(baseDir, pomFile, null);
     }
@@ -0,0 +1,109 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.maven.htl.compiler;
+
+import java.io.File;
+
+import org.apache.sling.scripting.sightly.java.compiler.ClassInfo;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HTLClassNameMapperTest {
+
+    private static final String[] SCRIPTS = {
+            "/apps/projects/script.html",
+            "/apps/projects/components/page/page.html",
+            "/apps/my-site/components/1column/1column.html",
+            "/apps/my-site/components/1column/partials/head.html",
+            "/libs/core/wcm/components/text/v2/text/text.html"
+    };
+
+    @Test
+    public void testMappingWithoutPrefix() {
+        HTLClassNameMapper mapper = new HTLClassNameMapper(null);
+        for (String script : SCRIPTS) {
+            assertClassInfo(new HTLClassInfo(script), mapper.getClassInfo(script));
+        }
+    }
+
+    @Test
+    public void testMappingWithPrefix() {
+        String prefix = "org.apache.sling.scripting.sightly";
+        HTLClassNameMapper mapper = new HTLClassNameMapper(prefix);
+        for (String script : SCRIPTS) {
+            assertClassInfo(new HTLClassInfo(prefix, script), mapper.getClassInfo(script));
+        }
+    }
+
+    @Test
+    public void testSourceFile() {
+        HTLClassNameMapper mapper = new HTLClassNameMapper(null);
+        File sourceRoot = new File("target");
+        ClassInfo classInfo = mapper.getClassInfo("/apps/projects/script.html");
+        assertEquals(new File(sourceRoot, "apps" + File.separator + "projects" + File.separator + "script__002e__html.java"),
+                mapper.getSourceFile(sourceRoot, classInfo));
+    }
+
+    @Test
+    public void testScriptName() {
+        String prefix = "org.apache.sling.scripting.sightly";
+        for (HTLClassNameMapper mapper : new HTLClassNameMapper[] {new HTLClassNameMapper(null), new HTLClassNameMapper(prefix)}) {
+            for (String script : SCRIPTS) {
+                assertEquals(script, mapper.getScriptName(mapper.getClassInfo(script).getFullyQualifiedClassName()));
+            }
+        }
+    }
+
+    @Test
+    public void testClaim() {
+        HTLClassNameMapper mapper = new HTLClassNameMapper(null);
+        for (String script : new String[] {"/apps/projects/my-script.html", "/apps/projects/other.html", "/apps/projects/Script.html"}) {
+            assertNull(mapper.claim(mapper.getClassInfo(script), script));
+        }
+        // '-' is escaped to __002d__, so both scripts are transpiled to the same class
+        assertEquals("/apps/projects/my-script.html", mapper.claim(mapper.getClassInfo("/apps/projects/my__002d__script.html"),
+                "/apps/projects/my__002d__script.html"));
+        assertNull(mapper.getCaseClashingScript(mapper.getClassInfo("/apps/projects/my-script.html"), "/apps/projects/my-script.html"));
+    }
+
+    @Test
+    public void testCaseClashingScript() {
+        HTLClassNameMapper mapper = new HTLClassNameMapper(null);
+        for (String script : new String[] {"/apps/projects/other.html", "/apps/projects/Script.html"}) {
+            assertNull(mapper.claim(mapper.getClassInfo(script), script));
+            assertNull(mapper.getCaseClashingScript(mapper.getClassInfo(script), script));
+        }
+        // different classes, but their source files would overwrite each other on case-insensitive file systems
+        for (String script : new String[] {"/apps/projects/script.html", "/APPS/projects/other.html"}) {
+            assertNull(mapper.claim(mapper.getClassInfo(script), script));
+        }
+        assertEquals("/apps/projects/Script.html", mapper.getCaseClashingScript(mapper.getClassInfo("/apps/projects/script.html"),
+                "/apps/projects/script.html"));
+        assertEquals("/apps/projects/other.html", mapper.getCaseClashingScript(mapper.getClassInfo("/APPS/projects/other.html"),
+                "/APPS/projects/other.html"));
+    }
+
+    private void assertClassInfo(ClassInfo expected, ClassInfo actual) {
+        assertEquals(expected.getFullyQualifiedClassName(), actual.getFullyQualifiedClassName());
+        assertEquals(expected.getPackageName(), actual.getPackageName());
+        assertEquals(expected.getSimpleClassName(), actual.getSimpleClassName());
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HTLScriptScannerTest {
+
+    private static final String[] MARKERS = {"${", "data-sly-test", "DATA-SLY-LIST", "<sly", "<SLY", "<!--/*"};
+    /**
+     * The shortest forms of the markers, whose prefixes are not markers.
+     */
+    private static final String[] SHORTEST_MARKERS = {"${", "data-sly", "DATA-SLY", "<sly", "<SLY", "<!--/*"};
+    private static final String STATIC_TEXT = "<div class=\"price\"><!-- $ 5 --><p data-id=\"1\">slyly <b>priced</b> at $</p></div>";
+    private static final int BUFFER_SIZE = 16384;
+
+    @Test
+    public void testEmptyScript() throws IOException {
+        assertFalse("Did not expect an empty script to contain HTL constructs.", scan(""));
+        assertFalse("Did not expect an empty script to contain HTL constructs.", scanByteByByte(""));
+    }
+
+    @Test
+    public void testStaticScript() throws IOException {
+        assertFalse("Did not expect HTL constructs in: " + STATIC_TEXT, scan(STATIC_TEXT));
+        assertFalse("Did not expect HTL constructs in: " + STATIC_TEXT, scanByteByByte(STATIC_TEXT));
+    }
+
+    @Test
+    public void testDollarAtEndOfStream() throws IOException {
+        assertFalse("Did not expect a trailing $ to be an expression.", scan("<p>5$"));
+        assertFalse("Did not expect a trailing $ to be an expression.", scanByteByByte("<p>5$"));
+        assertFalse("Did not expect a single $ to be an expression.", scan("$"));
+        assertTrue("Expected a trailing ${ to be an expression.", scan("<p>5${"));
+    }
+
+    @Test
+    public void testMarkers() throws IOException {
+        for (String marker : MARKERS) {
+            for (String script : new String[] {marker, STATIC_TEXT + marker, marker + STATIC_TEXT, STATIC_TEXT + marker + STATIC_TEXT}) {
+                assertTrue("Expected HTL constructs in: " + script, scan(script));
+                assertTrue("Expected HTL constructs when reading byte by byte: " + script, scanByteByByte(script));
+            }
+        }
+    }
+
+    @Test
+    public void testMarkersSplitAcrossBufferBoundary() throws IOException {
+        for (String marker : MARKERS) {
+            for (int split = 1; split < marker.length(); split++) {
+                // the marker starts before the end of the first buffer and ends in the second one
+                String script = StringUtils.repeat('x', BUFFER_SIZE - split) + marker + StringUtils.repeat('x', BUFFER_SIZE);
+                assertTrue("Expected " + marker + " split after " + split + " characters to be found.", scan(script));
+                assertTrue("Expected " + marker + " split after " + split + " characters to be found.", scanByteByByte(script));
+            }
+            // the marker ends exactly at the end of the first buffer and at the end of the stream
+            assertTrue("Expected " + marker + " to be found at the end of the buffer.",
+                    scan(StringUtils.repeat('x', BUFFER_SIZE - marker.length()) + marker + StringUtils.repeat('x', BUFFER_SIZE)));
+            assertTrue("Expected " + marker + " to be found at the end of the stream.",
+                    scan(StringUtils.repeat('x', 3 * BUFFER_SIZE - marker.length()) + marker));
+        }
+    }
+
+    @Test
+    public void testPartialMarkersAcrossBufferBoundary() throws IOException {
+        for (String marker : SHORTEST_MARKERS) {
+            // every prefix of a marker, followed by a character breaking it
+            for (int length = 1; length < marker.length(); length++) {
+                String script = StringUtils.repeat('x', BUFFER_SIZE - length) + marker.substring(0, length) + " " +
+                        StringUtils.repeat('x', BUFFER_SIZE);
+                assertFalse("Did not expect the partial marker " + marker.substring(0, length) + " to be found.", scan(script));
+                assertFalse("Did not expect the partial marker " + marker.substring(0, length) + " to be found.",
+                        scanByteByByte(script));
+            }
+        }
+    }
+
+    private static boolean scan(String script) throws IOException {
+        return HTLScriptScanner.containsHTLConstructs(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static boolean scanByteByByte(String script) throws IOException {
+        return HTLScriptScanner.containsHTLConstructs(new OneByteInputStream(new ByteArrayInputStream(script.getBytes(StandardCharsets
+                .UTF_8))));
+    }
+
+    /**
+     * Returns at most one byte per read, like a slow network stream.
+     */
+    private static final class OneByteInputStream extends FilterInputStream {
+
+        private OneByteInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.maven.htl.fork;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class CompilerWorkerPoolTest {
+
+    private static final String SCRIPT_NAME = "/apps/projects/script.html";
+    private static final String SCRIPT = "<p>${properties.title}</p>";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testAppCdsArchive() throws Exception {
+        Assume.assumeTrue("AppCDS archives require Java 13 or newer.", CompilerWorkerPool.isAppCdsSupported());
+        String classPath = getJarClassPath();
+        assertTrue("Expected a class path made only of JAR files to be archivable.", CompilerWorkerPool.isAppCdsArchivable(classPath));
+        File archive = new File(temporaryFolder.getRoot(), "compiler-worker.jsa");
+        Log log = mock(Log.class);
+
+        CompilerWorkerPool creatingPool = newCompilerWorkerPool(Collections.<String>emptyList(), classPath, archive, log);
+        File classPathArchive = creatingPool.getAppCdsArchive();
+        assertTrue("Expected the archive's name to be suffixed with the class path's hash, but got " + classPathArchive.getName(),
+                classPathArchive.getName().matches("compiler-worker-[0-9a-f]{16}\\.jsa"));
+        assertFalse("Did not expect the AppCDS archive to exist before the first compilation.", classPathArchive.exists());
+        compile(creatingPool);
+        assertTrue("Expected the first worker to create the AppCDS archive.", classPathArchive.isFile());
+        long lastModified = classPathArchive.lastModified();
+
+        // -Xshare:on makes the workers fail to start if the archive cannot be used
+        CompilerWorkerPool reusingPool = newCompilerWorkerPool(Collections.singletonList("-Xshare:on"), classPath, archive, log);
+        assertEquals(classPathArchive, reusingPool.getAppCdsArchive());
+        compile(reusingPool);
+        assertEquals("Did not expect the AppCDS archive to be recreated.", lastModified, classPathArchive.lastModified());
+        verify(log, never()).warn(anyString());
+
+        File pluginJar = new File(StringUtils.substringBefore(classPath, File.pathSeparator));
+        assertTrue(pluginJar.setLastModified(pluginJar.lastModified() - 60000));
+        assertNotEquals("Expected a different AppCDS archive after updating a JAR file of the class path.", classPathArchive,
+                newCompilerWorkerPool(Collections.<String>emptyList(), classPath, archive, log).getAppCdsArchive());
+    }
+
+    @Test
+    public void testAppCdsArchiveWithFolders() throws Exception {
+        Assume.assumeTrue("AppCDS archives require Java 13 or newer.", CompilerWorkerPool.isAppCdsSupported());
+        String classPath = System.getProperty("java.class.path");
+        assertFalse("Expected a class path with folders not to be archivable.", CompilerWorkerPool.isAppCdsArchivable(classPath));
+        Log log = mock(Log.class);
+
+        CompilerWorkerPool pool = newCompilerWorkerPool(Collections.<String>emptyList(), classPath, new File(temporaryFolder.getRoot(),
+                "compiler-worker.jsa"), log);
+        compile(pool);
+        assertFalse("Did not expect an AppCDS archive for a class path with folders.", pool.getAppCdsArchive().exists());
+        verify(log).warn(contains("could not create the AppCDS archive"));
+    }
+
+    private static CompilerWorkerPool newCompilerWorkerPool(List<String> jvmArguments, String classPath, File appCdsArchive, Log log) {
+        return new CompilerWorkerPool(jvmArguments, classPath, 1, appCdsArchive, null, null, false, log);
+    }
+
+    private static void compile(CompilerWorkerPool pool) throws IOException {
+        List<ForkedCompilationResult> results = pool.compile(Collections.singletonList(new CompilerWorkerPool.Request(SCRIPT_NAME, null,
+                SCRIPT.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(1, results.size());
+        assertTrue("Did not expect compilation errors for " + SCRIPT_NAME, results.get(0).getErrors().isEmpty());
+    }
+
+    /**
+     * Returns the test class path, with the folders packaged as JAR files, since AppCDS archives can only store classes from JAR files.
+     */
+    private String getJarClassPath() throws IOException {
+        List<String> classPath = new ArrayList<>();
+        for (String entry : StringUtils.split(System.getProperty("java.class.path"), File.pathSeparatorChar)) {
+            File file = new File(entry);
+            if (file.isDirectory()) {
+                File jar = temporaryFolder.newFile(file.getName() + ".jar");
+                try (JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jar))) {
+                    for (File classFile : FileUtils.listFiles(file, null, true)) {
+                        String name = file.toURI().relativize(classFile.toURI()).getPath();
+                        jarOutputStream.putNextEntry(new ZipEntry(name));
+                        FileUtils.copyFile(classFile, jarOutputStream);
+                        jarOutputStream.closeEntry();
+                    }
+                }
+                classPath.add(0, jar.getAbsolutePath());
+            } else if (file.isFile()) {
+                classPath.add(file.getAbsolutePath());
+            }
+        }
+        return StringUtils.join(classPath, File.pathSeparator);
+    }
+}